@@ -173,6 +173,7 @@ public class ArrivalSigns {
         public long startTime = -1;
         public long duration;
         private String name;
+        private String shownDuration = null;
 
         public void trigger() {
             this.startTime = System.currentTimeMillis();
@@ -191,10 +192,13 @@ public class ArrivalSigns {
 
         public boolean update() {
             if (!TCConfig.SignLinkEnabled) return false;
-            //Calculate the time to display
+            //Calculate the time to display, only send it when it changed
             String dur = getDuration();
-            Variables.get(this.name).set(dur);
-            Variables.get(this.name + 'T').set(dur);
+            if (!dur.equals(this.shownDuration)) {
+                this.shownDuration = dur;
+                Variables.get(this.name).set(dur);
+                Variables.get(this.name + 'T').set(dur);
+            }
             if (dur.equals("00:00:00")) {
                 timerSigns.remove(this.name);
                 return false;
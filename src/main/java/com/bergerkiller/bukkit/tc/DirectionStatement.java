@@ -4,6 +4,7 @@ import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.statements.CompiledStatement;
 import com.bergerkiller.bukkit.tc.statements.Statement;
 import org.bukkit.block.BlockFace;
 
@@ -13,6 +14,7 @@ public class DirectionStatement {
     public Direction direction;
     public String text;
     public Integer number;
+    private CompiledStatement compiled = null;
 
     public DirectionStatement(String text, BlockFace cartDirection) {
         this(text, BlockFace.SELF, Direction.NONE);
@@ -49,11 +51,23 @@ public class DirectionStatement {
     }
 
     public boolean has(SignActionEvent event, MinecartMember<?> member) {
-        return Statement.has(member, this.text, event);
+        return getCompiled().has(member, event);
     }
 
     public boolean has(SignActionEvent event, MinecartGroup group) {
-        return Statement.has(group, this.text, event);
+        return getCompiled().has(group, event);
+    }
+
+    /**
+     * Gets the compiled statement for the text of this direction statement
+     * 
+     * @return compiled statement
+     */
+    public CompiledStatement getCompiled() {
+        if (this.compiled == null || !this.compiled.getText().equals(this.text)) {
+            this.compiled = Statement.compile(this.text);
+        }
+        return this.compiled;
     }
 
     public boolean hasNumber() {
@@ -42,6 +42,8 @@ public class Permission extends PermissionEnum {
     public static final Permission COMMAND_CHANGEBLOCK = new Permission("train.command.changeblock", PermissionDefault.OP, "Whether the player can alter the type of block displayed in a minecart");
     public static final Permission COMMAND_CHANGETICK = new Permission("train.command.changetick", PermissionDefault.OP, "Whether the player can alter the global update tick rate of TrainCarts (debug!)");
     public static final Permission COMMAND_ISSUE = new Permission("train.command.issue", PermissionDefault.TRUE, "Whether the player can report problems with TrainCarts");
+    public static final Permission COMMAND_METRICS = new Permission("train.command.metrics", PermissionDefault.OP, "Whether the player can view the metrics of TrainCarts");
+    public static final Permission COMMAND_TRACE = new Permission("train.command.trace", PermissionDefault.OP, "Whether the player can write the recorded timings of TrainCarts to file");
     public static final Permission COMMAND_GIVE_EDITOR = new Permission("train.command.editor", PermissionDefault.OP, "Whether the player can use the editor command to give himself an editor map GUI");
     public static final Permission BUILD_STATION = new Permission("train.build.station", PermissionDefault.OP, "The player can build train stations");
     public static final Permission BUILD_SPAWNER = new Permission("train.build.spawner", PermissionDefault.OP, "The player can build train spawners");
@@ -6,6 +6,7 @@ import com.bergerkiller.bukkit.common.utils.*;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.signactions.SignAction;
 import com.bergerkiller.bukkit.tc.signactions.SignActionType;
+import org.bukkit.Chunk;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -24,15 +25,21 @@ import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Level;
 
 /**
- * Keeps track of Redstone Power for signs, raising proper Sign redstone events in the process
+ * Keeps track of Redstone Power for signs, raising proper Sign redstone events in the process.
+ * The power state of all signs in loaded chunks is cached per chunk, and can be queried
+ * using {@link #isPowered(Block)} without inspecting the blocks around the sign.
+ * Signs of which the blocks around them changed are read again the next tick.
  */
 public class RedstoneTracker implements Listener {
     private final BlockSet ignoredSigns = new BlockSet();
-    private BlockSet poweredBlocks = new BlockSet();
+    private final Map<UUID, Map<Long, Map<Integer, SignPower>>> signPower = new HashMap<>();
 
     /* ============= Handles raw block physics in a cached manner to reduce overhead ============ */
     private HashSet<Block> nextTickPhysicsBlocks = new HashSet<Block>();
@@ -54,14 +61,22 @@ public class RedstoneTracker implements Listener {
                         updateRedstonePower(block);
                     } else {
                         // Remove from block power storage
-                        poweredBlocks.remove(block);
+                        removeSignPower(block);
                     }
-                } else if (MaterialUtil.ISREDSTONETORCH.get(type)) {
-                    // Send proper update events for all signs around this power source
-                    for (BlockFace face : FaceUtil.RADIAL) {
-                        final Block rel = block.getRelative(face);
-                        if (MaterialUtil.ISSIGN.get(rel)) {
-                            updateRedstonePower(rel);
+                } else {
+                    // Remove the power state of a sign that was broken, if any signs are stored in the chunk
+                    Map<Integer, SignPower> chunkPower = getChunkPower(block, false);
+                    if (chunkPower != null && !chunkPower.isEmpty()) {
+                        chunkPower.remove(getSignKey(block));
+                    }
+
+                    if (MaterialUtil.ISREDSTONETORCH.get(type)) {
+                        // Send proper update events for all signs around this power source
+                        for (BlockFace face : FaceUtil.RADIAL) {
+                            final Block rel = block.getRelative(face);
+                            if (MaterialUtil.ISSIGN.get(rel)) {
+                                updateRedstonePower(rel);
+                            }
                         }
                     }
                 }
@@ -75,8 +90,10 @@ public class RedstoneTracker implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPhysics(BlockPhysicsEvent event) {
+        // Power of signs may have changed, it is read again the next tick
         nextTickPhysicsBlocks.add(event.getBlock());
         if (!nextTickQueued) {
+            nextTickQueued = true;
             CommonUtil.nextTick(nextTickPhysicsHandler);
         }
     }
@@ -99,7 +116,8 @@ public class RedstoneTracker implements Listener {
         for (BlockState state : states) {
             if (state instanceof Sign) {
                 Block block = state.getBlock();
-                LogicUtil.addOrRemove(poweredBlocks, block, PowerState.isSignPowered(block));
+                SignPower power = getSignPower(block, true);
+                power.powered = power.notified = PowerState.isSignPowered(block);
                 SignAction.handleLoadChange((Sign) state, true);
             }
         }
@@ -133,7 +151,7 @@ public class RedstoneTracker implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onWorldUnload(WorldUnloadEvent event) {
-        
+        signPower.remove(event.getWorld().getUID());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -143,6 +161,13 @@ public class RedstoneTracker implements Listener {
         } catch (Throwable t) {
             TrainCarts.plugin.getLogger().log(Level.SEVERE, "Error while initializing sign power states in chunk " + event.getChunk().getX() + "/" + event.getChunk().getZ(), t);
         }
+
+        // Forget the power states of signs in this chunk
+        Chunk chunk = event.getChunk();
+        Map<Long, Map<Integer, SignPower>> worldPower = signPower.get(chunk.getWorld().getUID());
+        if (worldPower != null) {
+            worldPower.remove(MathUtil.longHashToLong(chunk.getX(), chunk.getZ()));
+        }
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -206,6 +231,10 @@ public class RedstoneTracker implements Listener {
     }
 
     public void setRedstonePower(final Block signblock, boolean newPowerState) {
+        // Store the current power state
+        SignPower power = getSignPower(signblock, true);
+        power.powered = newPowerState;
+
         // Do not proceed if the sign disallows on/off changes
         if (ignoredSigns.remove(signblock)) {
             return;
@@ -214,13 +243,14 @@ public class RedstoneTracker implements Listener {
         // Is the event allowed?
         SignActionEvent info = new SignActionEvent(signblock);
         SignActionType type = info.getHeader().getRedstoneAction(newPowerState);
+        boolean changed = (power.notified != newPowerState);
+        power.notified = newPowerState;
         if (type == SignActionType.NONE) {
-            LogicUtil.addOrRemove(poweredBlocks, info.getBlock(), newPowerState);
             return;
         }
 
         // Change in redstone power?
-        if (!LogicUtil.addOrRemove(poweredBlocks, info.getBlock(), newPowerState)) {
+        if (!changed) {
 
             // No change in redstone power, but a redstone change nevertheless
             SignAction.executeAll(info, SignActionType.REDSTONE_CHANGE);
@@ -231,4 +261,81 @@ public class RedstoneTracker implements Listener {
         SignAction.executeAll(info, type);
         SignAction.executeAll(info, SignActionType.REDSTONE_CHANGE);
     }
+
+    /**
+     * Gets whether a sign is powered by redstone, ignoring the settings on the sign.
+     * The last known power state is returned, which is updated the tick after the blocks around the sign change.
+     * Only when no state is stored yet, it is read from the blocks around the sign and stored.
+     * 
+     * @param signblock of the sign
+     * @return True if the sign is powered, False if not
+     */
+    public boolean isPowered(Block signblock) {
+        SignPower power = getSignPower(signblock, false);
+        if (power == null) {
+            power = getSignPower(signblock, true);
+            power.powered = PowerState.isSignPowered(signblock);
+        }
+        return power.powered;
+    }
+
+    private void removeSignPower(Block block) {
+        Map<Integer, SignPower> chunkPower = getChunkPower(block, false);
+        if (chunkPower != null) {
+            chunkPower.remove(getSignKey(block));
+        }
+    }
+
+    private SignPower getSignPower(Block block, boolean create) {
+        Map<Integer, SignPower> chunkPower = getChunkPower(block, create);
+        if (chunkPower == null) {
+            return null;
+        }
+        Integer key = getSignKey(block);
+        SignPower power = chunkPower.get(key);
+        if (power == null && create) {
+            power = new SignPower();
+            chunkPower.put(key, power);
+        }
+        return power;
+    }
+
+    /**
+     * Gets the key of a sign in the power states of the chunk it is in, packing the coordinates within the chunk
+     *
+     * @param block of the sign
+     * @return key
+     */
+    private static Integer getSignKey(Block block) {
+        return Integer.valueOf((block.getY() << 8) | ((block.getX() & 0xF) << 4) | (block.getZ() & 0xF));
+    }
+
+    private Map<Integer, SignPower> getChunkPower(Block block, boolean create) {
+        UUID worldUUID = block.getWorld().getUID();
+        Map<Long, Map<Integer, SignPower>> worldPower = signPower.get(worldUUID);
+        if (worldPower == null) {
+            if (!create) {
+                return null;
+            }
+            worldPower = new HashMap<>();
+            signPower.put(worldUUID, worldPower);
+        }
+        long chunkKey = MathUtil.longHashToLong(block.getX() >> 4, block.getZ() >> 4);
+        Map<Integer, SignPower> chunkPower = worldPower.get(chunkKey);
+        if (chunkPower == null && create) {
+            chunkPower = new HashMap<>();
+            worldPower.put(chunkKey, chunkPower);
+        }
+        return chunkPower;
+    }
+
+    /**
+     * Power state of a single sign
+     */
+    private static class SignPower {
+        /** Current redstone power state */
+        public boolean powered = false;
+        /** Power state for which sign redstone events were last fired */
+        public boolean notified = false;
+    }
 }
@@ -18,6 +18,7 @@ import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.MaterialUtil;
 import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.common.utils.ParseUtil;
+import com.bergerkiller.bukkit.tc.statements.Statement;
 
 /**
  * Stores all the settings specified in the TrainCarts config.yml.
@@ -48,12 +49,20 @@ public class TCConfig {
     public static boolean useCoalFromStorageCart;
     public static boolean setOwnerOnPlacement;
     public static boolean keepChunksLoadedOnlyWhenMoving;
+    public static int keepChunksLoadedGracePeriod = 100; // ticks chunks stay loaded after a train left them
+    public static int chunkPreloadRate = 2; // chunks loaded ahead of trains per tick
+    public static double chunkPreloadSeconds = 5.0; // seconds of travel ahead of trains to load chunks for
+    public static double spawnTickBudget = 2.0; // milliseconds per tick spent spawning carts of spawn signs
+    public static double attachmentViewDistance = 64.0; // blocks within which detailed attachments are shown
+    public static int soundCartInterval = 4; // every how many carts of a train make rolling sound
     public static boolean playSoundAtStation;
     public static int maxDetectorLength;
     public static int maxMinecartStackSize;
     public static int defaultTransferRadius;
     public static int maxTransferRadius;
     public static boolean showTransferAnimations;
+    public static int maxTransferAnimationsPerChunk;
+    public static double transferAnimationViewDistance;
     public static boolean craftingRequireWorkbench;
     public static boolean slowDownEmptyCarts;
     public static double slowDownMultiplierSlow;
@@ -78,6 +87,13 @@ public class TCConfig {
     public static int tickUpdateDivider = 1; // allows slowing down of minecart physics globally (debugging!)
     public static int tickUpdateNow = 0; // forces update ticks
     public static int autoSaveInterval = 30 * 20; // autosave every 30 seconds
+    public static int sleepDelay = 20; // ticks a train stands still before it goes to sleep
+    public static double physicsTickBudget = 0.0; // milliseconds per tick spent on physics of trains far from players
+    public static double physicsFullRateDistance = 64.0; // blocks from a player within which trains always do physics
+    public static int physicsMaxDeferTicks = 20; // maximum ticks trains far from players may skip physics
+    public static int metricsDumpInterval = 0; // seconds between writing metrics to file, 0 to disable
+    public static int traceSampleInterval = 0; // every how many ticks timings are traced, 0 to disable
+    public static int traceBufferSize = 65536; // number of traced timings kept in memory
     public static String currencyFormat;
     public static Set<Material> allowedBlockBreakTypes = new HashSet<>();
     public static Set<String> disabledWorlds = new HashSet<>();
@@ -165,6 +181,59 @@ public class TCConfig {
         config.setHeader("keepChunksLoadedOnlyWhenMoving", "\nWhether or not chunks are only kept loaded when the train is moving");
         keepChunksLoadedOnlyWhenMoving = config.get("keepChunksLoadedOnlyWhenMoving", false);
 
+        config.setHeader("keepChunksLoadedGracePeriod", "\nThe number of ticks chunks stay loaded after a train that keeps chunks loaded left them");
+        config.addHeader("keepChunksLoadedGracePeriod", "This avoids chunks loading and unloading repeatedly when trains move back and forth");
+        keepChunksLoadedGracePeriod = config.get("keepChunksLoadedGracePeriod", 100);
+
+        config.setHeader("chunkPreloadRate", "\nThe maximum number of chunks loaded every tick ahead of trains that keep chunks loaded");
+        config.addHeader("chunkPreloadRate", "Loading chunks before the train arrives avoids stutter, but costs tick time");
+        chunkPreloadRate = config.get("chunkPreloadRate", 2);
+
+        config.setHeader("chunkPreloadSeconds", "\nHow many seconds of travel ahead of trains that keep chunks loaded to load chunks for");
+        config.addHeader("chunkPreloadSeconds", "The track in front of the train is followed for the distance it travels at its current speed");
+        config.addHeader("chunkPreloadSeconds", "Set to 0 to disable loading chunks ahead of trains");
+        chunkPreloadSeconds = config.get("chunkPreloadSeconds", 5.0);
+
+        config.setHeader("spawnTickBudget", "\nThe maximum time in milliseconds spent spawning carts of spawn signs every tick");
+        config.addHeader("spawnTickBudget", "Long trains are spawned over multiple ticks, and start moving once all carts are spawned");
+        spawnTickBudget = config.get("spawnTickBudget", 2.0);
+
+        config.setHeader("attachmentViewDistance", "\nThe distance in blocks a player must be within to see the detailed attachments of carts");
+        config.addHeader("attachmentViewDistance", "Players further away only see the minecart and its passengers");
+        attachmentViewDistance = config.get("attachmentViewDistance", 64.0);
+
+        config.setHeader("soundCartInterval", "\nEvery how many carts of a train make the minecart rolling sound");
+        config.addHeader("soundCartInterval", "The first and last cart always make sound. Set to 1 to let all carts make sound");
+        soundCartInterval = config.get("soundCartInterval", 4);
+
+        config.setHeader("sleepDelay", "\nThe number of ticks a train must stand still before it goes to sleep");
+        config.addHeader("sleepDelay", "Sleeping trains skip all physics updates until something makes them move again");
+        config.addHeader("sleepDelay", "This greatly reduces the cost of parked trains. Set to 0 to disable sleeping");
+        sleepDelay = config.get("sleepDelay", 20);
+
+        config.setHeader("physicsTickBudget", "\nThe maximum time in milliseconds spent on train physics every tick");
+        config.addHeader("physicsTickBudget", "When exceeded, trains far away from players are updated in turns, and catch up the skipped ticks");
+        config.addHeader("physicsTickBudget", "Trains near players are always updated every tick. Set to 0 to update all trains every tick (default)");
+        physicsTickBudget = config.get("physicsTickBudget", 0.0);
+
+        config.setHeader("physicsFullRateDistance", "\nThe distance in blocks from a player within which trains always do physics every tick");
+        physicsFullRateDistance = config.get("physicsFullRateDistance", 64.0);
+
+        config.setHeader("physicsMaxDeferTicks", "\nThe maximum number of ticks a train far away from players may skip physics");
+        config.addHeader("physicsMaxDeferTicks", "Trains that skipped physics for this long are always updated");
+        physicsMaxDeferTicks = config.get("physicsMaxDeferTicks", 20);
+
+        config.setHeader("metricsDumpInterval", "\nThe interval in seconds at which metrics are written to the metrics.prom file");
+        config.addHeader("metricsDumpInterval", "The file uses the Prometheus text format, for a local scraper to collect. Set to 0 to disable");
+        metricsDumpInterval = config.get("metricsDumpInterval", 0);
+
+        config.setHeader("traceSampleInterval", "\nEvery how many ticks the time taken by train physics, signs and path finding is recorded");
+        config.addHeader("traceSampleInterval", "The recorded timings can be written to file using /train trace dump [seconds]. Set to 0 to disable");
+        traceSampleInterval = config.get("traceSampleInterval", 0);
+
+        config.setHeader("traceBufferSize", "\nThe number of recorded timings kept in memory. When full, the oldest timings are discarded");
+        traceBufferSize = config.get("traceBufferSize", 65536);
+
         config.setHeader("enableCeilingBlockCollision", "\nWhether to enable or cancel collisions with blocks above minecarts");
         config.addHeader("enableCeilingBlockCollision", "Some constructions depend on these block collisions to block minecarts");
         config.addHeader("enableCeilingBlockCollision", "If these collisions are unwanted, they can be turned off here");
@@ -268,6 +337,14 @@ public class TCConfig {
         config.setHeader("showTransferAnimations", "\nWhether or not to show item animations when transferring items");
         showTransferAnimations = config.get("showTransferAnimations", true);
 
+        config.setHeader("maxTransferAnimationsPerChunk", "\nThe maximum number of item transfer animations that can run at the same time in a single chunk\n" +
+                "When more items are transferred, the extra items are not animated");
+        maxTransferAnimationsPerChunk = config.get("maxTransferAnimationsPerChunk", 16);
+
+        config.setHeader("transferAnimationViewDistance", "\nThe distance in blocks a player must be within to see item transfer animations\n" +
+                "Animations are not started when no player is near enough to see them");
+        transferAnimationViewDistance = config.get("transferAnimationViewDistance", 48.0);
+
         config.setHeader("craftingRequireWorkbench", "\nWhether a crafting table must exist when crafting items inside a storage minecart\n" +
                 "When this is set to false and no crafting table is nearby, no item transfer animations are shown");
         craftingRequireWorkbench = config.get("craftingRequireWorkbench", true);
@@ -285,6 +362,7 @@ public class TCConfig {
             config.set("statementShortcuts.diamond", "i@diamond");
         }
         statementShortcuts.clear().load(config.getNode("statementShortcuts"));
+        Statement.clearCompiled();
 
         //parser shortcuts
         config.setHeader("itemShortcuts", "\nSeveral shortcuts you can use on signs to set the items");
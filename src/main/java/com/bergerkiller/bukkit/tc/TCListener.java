@@ -13,9 +13,12 @@ import com.bergerkiller.bukkit.common.wrappers.BlockData;
 import com.bergerkiller.bukkit.common.wrappers.HumanHand;
 import com.bergerkiller.bukkit.tc.attachments.ProfileNameModifier;
 import com.bergerkiller.bukkit.tc.attachments.old.FakePlayer;
+import com.bergerkiller.bukkit.tc.controller.ChunkKeepAliveManager;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroupStore;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.controller.components.RailTracker;
 import com.bergerkiller.bukkit.tc.editor.TCMapControl;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
@@ -34,6 +37,7 @@ import com.bergerkiller.mountiplex.reflection.ClassTemplate;
 import com.bergerkiller.mountiplex.reflection.SafeMethod;
 import com.bergerkiller.reflection.net.minecraft.server.NMSVector;
 
+import org.bukkit.Chunk;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -109,31 +113,17 @@ public class TCListener implements Listener {
     public void onChunkUnloadLow(ChunkUnloadEvent event) {
         synchronized (this.expectUnload) {
             this.expectUnload.clear();
-            for (MinecartGroup mg : MinecartGroup.getGroupsUnsafe()) {
-                if (mg.isInChunk(event.getChunk())) {
-                    if (mg.canUnload()) {
-                        this.expectUnload.add(mg);
-                    } else {
-                        event.setCancelled(true);
-                        return;
-                    }
-                }
+            Chunk chunk = event.getChunk();
+            if (ChunkKeepAliveManager.isKeptLoaded(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+                event.setCancelled(true);
+                return;
             }
-            // Double-check
-            for (Entity entity : WorldUtil.getEntities(event.getChunk())) {
-                if (entity instanceof Minecart) {
-                    MinecartMember<?> member = MinecartMemberStore.getFromEntity(entity);
-                    if (member == null || !member.isInteractable()) {
-                        continue;
-                    }
-                    if (member.getGroup().canUnload()) {
-                        if (!this.expectUnload.contains(member.getGroup())) {
-                            this.expectUnload.add(member.getGroup());
-                        }
-                    } else {
-                        event.setCancelled(true);
-                        return;
-                    }
+            for (MinecartGroup mg : MinecartGroupStore.getGroupsNearChunk(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+                if (mg.canUnload()) {
+                    this.expectUnload.add(mg);
+                } else {
+                    event.setCancelled(true);
+                    return;
                 }
             }
         }
@@ -270,6 +260,9 @@ public class TCListener implements Listener {
             //}
         }
         member.onPropertiesChanged();
+
+        // Sleeping trains do not read steering input from passengers, so wake the train up
+        member.getGroup().wakeUp();
     }
 
     /*
@@ -700,6 +693,7 @@ public class TCListener implements Listener {
         if (MaterialUtil.ISSIGN.get(event.getBlock())) {
             SignAction.handleDestroy(new SignActionEvent(event.getBlock()));
         } else if (MaterialUtil.ISRAILS.get(event.getBlock())) {
+            RailTracker.markRailsChanged();
             onRailsBreak(event.getBlock());
         }
     }
@@ -716,6 +710,10 @@ public class TCListener implements Listener {
                 public void run() {
                     RailType railType = RailType.getType(placed);
                     if (railType != RailType.NONE) {
+                        RailTracker.markRailsChanged();
+                        if (TrainCarts.plugin.getRailLogicCache() != null) {
+                            TrainCarts.plugin.getRailLogicCache().invalidate(placed);
+                        }
                         railType.onBlockPlaced(placed);
                         BlockUtil.applyPhysics(placed, placed.getType());
                     }
@@ -731,6 +729,8 @@ public class TCListener implements Listener {
     public void onBlockPhysics(BlockPhysicsEvent event) {
         RailType railType = RailType.getType(event.getBlock());
         if (railType != RailType.NONE) {
+            RailTracker.markRailsChanged();
+
             // First check that the rails are supported as they are
             // If not, it will be destroyed either by onBlockPhysics or Vanilla physics
             if (!railType.isRailsSupported(event.getBlock())) {
@@ -739,6 +739,35 @@ public class TCListener implements Listener {
 
             // Let the rail type handle any custom physics
             railType.onBlockPhysics(event);
+
+            // Wake up sleeping trains on or near the rails so they respond to the change
+            wakeUpNearRails(event.getBlock());
+        }
+    }
+
+    /**
+     * Wakes up the trains that have a minecart on or right next to a rails block.
+     * Only the trains indexed near the chunk of the rails are checked, to keep this fast.
+     *
+     * @param railsBlock that changed
+     */
+    private void wakeUpNearRails(Block railsBlock) {
+        for (MinecartGroup group : MinecartGroupStore.getGroupsNearChunk(railsBlock.getWorld(),
+                railsBlock.getX() >> 4, railsBlock.getZ() >> 4))
+        {
+            if (!group.isSleeping()) {
+                continue;
+            }
+            for (MinecartMember<?> member : group) {
+                IntVector3 pos = member.getBlockPos();
+                if (Math.abs(pos.x - railsBlock.getX()) <= 1 &&
+                    Math.abs(pos.y - railsBlock.getY()) <= 1 &&
+                    Math.abs(pos.z - railsBlock.getZ()) <= 1)
+                {
+                    group.wakeUp();
+                    break;
+                }
+            }
         }
     }
 
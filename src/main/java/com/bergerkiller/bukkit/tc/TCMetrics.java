@@ -0,0 +1,272 @@
+package com.bergerkiller.bukkit.tc;
+
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.PhysicsScheduler;
+import com.bergerkiller.bukkit.tc.pathfinding.PathProvider;
+import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps track of metrics about the state and performance of trains, signs and storage.
+ * The metrics can be written in the Prometheus text exposition format, which is done
+ * periodically to a file in the plugin folder so that a local scraper can collect them.
+ * All metrics are updated and read on the main thread, only writing the file is done asynchronously.
+ */
+public class TCMetrics {
+    public static final String DUMP_FILE_NAME = "metrics.prom";
+    public static final Counter SIGN_ACTIONS = new Counter("traincarts_sign_actions_total", "Sign actions executed", "sign");
+    public static final Counter DETECTOR_EVENTS = new Counter("traincarts_detector_events_total", "Minecarts entering and leaving detector regions", "event");
+    public static final Counter NETWORK_PACKETS = new Counter("traincarts_network_packets_total", "Packets sent to players by minecarts and their attachments", "type");
+    public static final Counter PHYSICS_TIME = new Counter("traincarts_physics_seconds_total", "Time spent on train physics", null);
+    private static final Map<String, Double> saveDurations = new TreeMap<>();
+    private static long lastTickPhysicsTime = 0;
+    private static long currentTickPhysicsTime = 0;
+    private static Task dumpTask = null;
+    private static final Object dumpLock = new Object();
+
+    public static void init(final JavaPlugin plugin) {
+        if (TCConfig.metricsDumpInterval <= 0) {
+            return;
+        }
+        final File file = new File(plugin.getDataFolder(), DUMP_FILE_NAME);
+        final int interval = TCConfig.metricsDumpInterval * 20;
+        dumpTask = new Task(plugin) {
+            @Override
+            public void run() {
+                dump(file);
+            }
+        }.start(interval, interval);
+    }
+
+    public static void deinit() {
+        Task.stop(dumpTask);
+        dumpTask = null;
+    }
+
+    /**
+     * Records the time trains spent on physics. Called after every train physics update.
+     *
+     * @param nanos the physics took
+     */
+    public static void onPhysics(long nanos) {
+        currentTickPhysicsTime += nanos;
+        PHYSICS_TIME.add(nanos);
+    }
+
+    /**
+     * Ends the current tick, remembering the time spent on physics during it. Called once every tick.
+     */
+    public static void onTick() {
+        lastTickPhysicsTime = currentTickPhysicsTime;
+        currentTickPhysicsTime = 0;
+    }
+
+    /**
+     * Records the time it took to save a store of information to disk
+     *
+     * @param store name
+     * @param startTime System nano time when saving started
+     * @return System nano time now, to be used as the start time of the next store
+     */
+    public static long onSaved(String store, long startTime) {
+        long now = System.nanoTime();
+        saveDurations.put(store, Double.valueOf((double) (now - startTime) / 1E9));
+        return now;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format
+     *
+     * @param text to write to
+     */
+    public static void write(StringBuilder text) {
+        int active = 0;
+        int sleeping = 0;
+        for (MinecartGroup group : MinecartGroup.getGroupsUnsafe()) {
+            if (group.isSleeping()) {
+                sleeping++;
+            } else {
+                active++;
+            }
+        }
+        writeType(text, "traincarts_groups", "Trains by state", "gauge");
+        writeValue(text, "traincarts_groups", "state", "active", active);
+        writeValue(text, "traincarts_groups", "state", "sleeping", sleeping);
+        writeValue(text, "traincarts_groups", "state", "offline", OfflineGroupManager.getStoredCount());
+
+        writeType(text, "traincarts_physics_tick_seconds", "Time spent on train physics during the last tick", "gauge");
+        writeValue(text, "traincarts_physics_tick_seconds", null, null, (double) lastTickPhysicsTime / 1E9);
+        PHYSICS_TIME.write(text, 1E-9);
+        writeType(text, "traincarts_physics_budget_seconds", "Time per tick that may be spent on physics of trains far from players, 0 if unlimited", "gauge");
+        writeValue(text, "traincarts_physics_budget_seconds", null, null, (double) PhysicsScheduler.getBudget() / 1E9);
+        writeType(text, "traincarts_physics_scheduled_seconds", "Estimated time of the physics of the trains updated during the last tick", "gauge");
+        writeValue(text, "traincarts_physics_scheduled_seconds", null, null, (double) PhysicsScheduler.getScheduledTime() / 1E9);
+        writeType(text, "traincarts_physics_deferred_groups", "Trains that skipped physics during the last tick", "gauge");
+        writeValue(text, "traincarts_physics_deferred_groups", null, null, PhysicsScheduler.getDeferredCount());
+        writeType(text, "traincarts_physics_worst_lag_ticks", "Highest number of ticks any train is behind on physics", "gauge");
+        writeValue(text, "traincarts_physics_worst_lag_ticks", null, null, PhysicsScheduler.getWorstLag());
+
+        writeType(text, "traincarts_pathfinding_pending", "Path finding work waiting to be processed", "gauge");
+        writeValue(text, "traincarts_pathfinding_pending", "kind", "operations", PathProvider.getPendingOperationCount());
+        writeValue(text, "traincarts_pathfinding_pending", "kind", "nodes", PathProvider.getPendingNodeCount());
+
+        SIGN_ACTIONS.write(text, 1.0);
+        DETECTOR_EVENTS.write(text, 1.0);
+        NETWORK_PACKETS.write(text, 1.0);
+
+        writeType(text, "traincarts_save_seconds", "Time it took to save each store to disk the last time", "gauge");
+        for (Map.Entry<String, Double> entry : saveDurations.entrySet()) {
+            writeValue(text, "traincarts_save_seconds", "store", entry.getKey(), entry.getValue().doubleValue());
+        }
+    }
+
+    /**
+     * Writes all metrics to a file. The metrics are collected on the main thread, after which
+     * the file is written asynchronously. The file is replaced in one go, so readers never see a partial file.
+     *
+     * @param file to write to
+     */
+    public static void dump(final File file) {
+        StringBuilder text = new StringBuilder();
+        write(text);
+        final String content = text.toString();
+        Bukkit.getScheduler().runTaskAsynchronously(TrainCarts.plugin, new Runnable() {
+            @Override
+            public void run() {
+                writeFile(file, content);
+            }
+        });
+    }
+
+    private static void writeFile(File file, String content) {
+        synchronized (dumpLock) {
+            File tmpFile = new File(file.getPath() + ".tmp");
+            try {
+                Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8);
+                try {
+                    writer.write(content);
+                } finally {
+                    writer.close();
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                TrainCarts.plugin.log(Level.WARNING, "Failed to write metrics to " + file + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    private static void writeType(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeValue(StringBuilder text, String name, String labelName, String label, double value) {
+        text.append(name);
+        if (labelName != null) {
+            text.append('{').append(labelName).append("=\"");
+            for (int i = 0; i < label.length(); i++) {
+                char c = label.charAt(i);
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append("\"}");
+        }
+        text.append(' ');
+        if (value == (long) value) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * A value that only ever increases, optionally split up by a single label
+     */
+    public static class Counter {
+        private final String name;
+        private final String help;
+        private final String labelName;
+        private final Map<String, long[]> values = new TreeMap<>();
+
+        public Counter(String name, String help, String labelName) {
+            this.name = name;
+            this.help = help;
+            this.labelName = labelName;
+        }
+
+        /**
+         * Increments the counter by one
+         *
+         * @param label value, null if this counter has no label
+         */
+        public void inc(String label) {
+            add(label, 1);
+        }
+
+        /**
+         * Increments the counter of a counter without a label
+         *
+         * @param amount to add
+         */
+        public void add(long amount) {
+            add(null, amount);
+        }
+
+        /**
+         * Increments the counter
+         *
+         * @param label value, null if this counter has no label
+         * @param amount to add
+         */
+        public void add(String label, long amount) {
+            getValue(label)[0] += amount;
+        }
+
+        /**
+         * Gets the value of the counter for a label. The returned array holds the value
+         * as its only element, and can be kept to increment the counter without looking up the label.
+         *
+         * @param label value, null if this counter has no label
+         * @return value of the counter
+         */
+        public long[] getValue(String label) {
+            String key = (label == null) ? "" : label;
+            long[] value = this.values.get(key);
+            if (value == null) {
+                value = new long[1];
+                this.values.put(key, value);
+            }
+            return value;
+        }
+
+        private void write(StringBuilder text, double scale) {
+            writeType(text, this.name, this.help, "counter");
+            if (this.labelName == null && this.values.isEmpty()) {
+                writeValue(text, this.name, null, null, 0.0);
+            }
+            for (Map.Entry<String, long[]> entry : this.values.entrySet()) {
+                writeValue(text, this.name, this.labelName, entry.getKey(), (double) entry.getValue()[0] * scale);
+            }
+        }
+    }
+}
@@ -5,10 +5,12 @@ import com.bergerkiller.bukkit.common.events.PacketSendEvent;
 import com.bergerkiller.bukkit.common.protocol.CommonPacket;
 import com.bergerkiller.bukkit.common.protocol.PacketListener;
 import com.bergerkiller.bukkit.common.protocol.PacketType;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroupStore;
 import org.bukkit.entity.Player;
 
 /**
- * Temporary (???) packet listener to handle and cancel player SHIFT presses to cancel vehicle exit
+ * Temporary (???) packet listener to handle and cancel player SHIFT presses to cancel vehicle exit,
+ * and to wake up sleeping trains when a passenger steers them
  */
 public class TCPacketListener implements PacketListener {
 
@@ -19,12 +21,20 @@ public class TCPacketListener implements PacketListener {
     @Override
     public void onPacketReceive(PacketReceiveEvent event) {
         CommonPacket packet = event.getPacket();
-        if (event.getType() == PacketType.IN_STEER_VEHICLE && packet.read(PacketType.IN_STEER_VEHICLE.unmount)) {
+        if (event.getType() != PacketType.IN_STEER_VEHICLE) {
+            return;
+        }
+        if (packet.read(PacketType.IN_STEER_VEHICLE.unmount)) {
             // Handle vehicle exit cancelling
             Player player = event.getPlayer();
             if (!TrainCarts.handlePlayerVehicleChange(player, null)) {
                 packet.write(PacketType.IN_STEER_VEHICLE.unmount, false);
             }
+        } else if (packet.read(PacketType.IN_STEER_VEHICLE.forwards) != 0.0f ||
+                   packet.read(PacketType.IN_STEER_VEHICLE.sideways) != 0.0f) {
+            // Sleeping trains do not read steering input, so wake the train up
+            // Packets can be received off the main thread, so the train is looked up on the next tick
+            MinecartGroupStore.notifySteering(event.getPlayer());
         }
     }
 }
@@ -0,0 +1,302 @@
+package com.bergerkiller.bukkit.tc;
+
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import org.bukkit.Bukkit;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+
+/**
+ * Records how long train physics, sign actions, path finding and train restoring take, and
+ * which train and sign were involved. Only the ticks selected by the configured sample interval are recorded.
+ * Spans are stored in a fixed-size ring buffer, overwriting the oldest spans when full, so recording
+ * never allocates. All spans are recorded on the main thread, so no locking is needed.<br>
+ * <br>
+ * The recorded spans can be written to a file in the Chrome trace event format, which can be opened
+ * with tools such as chrome://tracing or speedscope to view them as a flame graph. The file is written
+ * asynchronously from a copy of the spans.
+ */
+public class TraceRecorder {
+    public static final byte SIGN_ACTION = 0;
+    public static final byte PHYSICS = 1;
+    public static final byte PATH_FINDING = 2;
+    public static final byte BLOCK_TRACKER = 3;
+    public static final byte RESTORE = 4;
+    private static final String[] SPAN_NAMES = {"signAction", "physics", "pathFinding", "blockTracker", "restore"};
+    private static int capacity = 0;
+    private static byte[] kinds;
+    private static long[] startTimes;
+    private static long[] durations;
+    private static String[] details;
+    private static String[] trains;
+    private static String[] signWorlds;
+    private static int[] signCoordinates;
+    private static long nextSpan = 0;
+    private static boolean sampling = false;
+    private static int ticks = 0;
+    private static Task sampleTask = null;
+
+    public static void init(JavaPlugin plugin) {
+        if (TCConfig.traceSampleInterval <= 0 || TCConfig.traceBufferSize <= 0) {
+            return;
+        }
+        capacity = TCConfig.traceBufferSize;
+        kinds = new byte[capacity];
+        startTimes = new long[capacity];
+        durations = new long[capacity];
+        details = new String[capacity];
+        trains = new String[capacity];
+        signWorlds = new String[capacity];
+        signCoordinates = new int[capacity * 3];
+        nextSpan = 0;
+        ticks = 0;
+        sampleTask = new Task(plugin) {
+            @Override
+            public void run() {
+                sampling = (++ticks % TCConfig.traceSampleInterval) == 0;
+            }
+        }.start(1, 1);
+    }
+
+    public static void deinit() {
+        Task.stop(sampleTask);
+        sampleTask = null;
+        sampling = false;
+        capacity = 0;
+        kinds = null;
+        startTimes = null;
+        durations = null;
+        details = null;
+        trains = null;
+        signWorlds = null;
+        signCoordinates = null;
+    }
+
+    /**
+     * Gets whether spans are recorded during the current tick
+     *
+     * @return True if recording
+     */
+    public static boolean isSampling() {
+        return sampling;
+    }
+
+    /**
+     * Starts a span without a train or sign. This can be called at any time; when
+     * the current tick is not sampled, nothing is recorded.
+     *
+     * @param kind of span
+     * @return span handle to pass to {@link #end(long)}
+     */
+    public static long begin(byte kind) {
+        return begin(kind, null, (String) null, null);
+    }
+
+    /**
+     * Starts a span for a train. Callers should check {@link #isSampling()} first,
+     * so that the arguments are not computed when the tick is not sampled.
+     *
+     * @param kind of span
+     * @param detail to include, null for none
+     * @param group involved, null for none
+     * @param sign involved, null for none
+     * @return span handle to pass to {@link #end(long)}
+     */
+    public static long begin(byte kind, String detail, MinecartGroup group, Block sign) {
+        if (!sampling) {
+            return -1L;
+        }
+        return begin(kind, detail, (group == null) ? null : group.getProperties().getTrainName(), sign);
+    }
+
+    /**
+     * Starts a span for a train. Callers should check {@link #isSampling()} first,
+     * so that the arguments are not computed when the tick is not sampled.
+     *
+     * @param kind of span
+     * @param detail to include, null for none
+     * @param trainName of the train involved, null for none
+     * @param sign involved, null for none
+     * @return span handle to pass to {@link #end(long)}
+     */
+    public static long begin(byte kind, String detail, String trainName, Block sign) {
+        if (!sampling) {
+            return -1L;
+        }
+        long span = nextSpan++;
+        int index = (int) (span % capacity);
+        kinds[index] = kind;
+        details[index] = detail;
+        trains[index] = trainName;
+        if (sign == null) {
+            signWorlds[index] = null;
+        } else {
+            signWorlds[index] = sign.getWorld().getName();
+            signCoordinates[3 * index] = sign.getX();
+            signCoordinates[3 * index + 1] = sign.getY();
+            signCoordinates[3 * index + 2] = sign.getZ();
+        }
+        durations[index] = -1L;
+        startTimes[index] = System.nanoTime();
+        return span;
+    }
+
+    /**
+     * Ends a span started using begin()
+     *
+     * @param span handle returned by begin()
+     */
+    public static void end(long span) {
+        // Ignore spans not recorded, or overwritten by newer spans while running
+        if (span < 0 || capacity == 0 || span < (nextSpan - capacity)) {
+            return;
+        }
+        int index = (int) (span % capacity);
+        durations[index] = System.nanoTime() - startTimes[index];
+    }
+
+    /**
+     * Writes the completed spans that started during the last amount of seconds to a file.
+     * The spans are copied on the main thread, after which the file is written asynchronously.
+     * The file is replaced in one go, so readers never see a partial file.
+     *
+     * @param file to write to
+     * @param seconds to write the spans of
+     * @return number of spans written
+     */
+    public static int dump(final File file, double seconds) {
+        // Find the spans to write
+        int count = 0;
+        long minStartTime = System.nanoTime() - (long) (seconds * 1E9);
+        long firstSpan = Math.max(0L, nextSpan - capacity);
+        if (capacity > 0) {
+            for (long span = firstSpan; span < nextSpan; span++) {
+                if (isDumped((int) (span % capacity), minStartTime)) {
+                    count++;
+                }
+            }
+        }
+
+        // Copy the spans, as they are overwritten while the file is written
+        final Snapshot snapshot = new Snapshot(count);
+        if (count > 0) {
+            int i = 0;
+            for (long span = firstSpan; span < nextSpan; span++) {
+                int index = (int) (span % capacity);
+                if (isDumped(index, minStartTime)) {
+                    snapshot.kinds[i] = kinds[index];
+                    snapshot.startTimes[i] = startTimes[index];
+                    snapshot.durations[i] = durations[index];
+                    snapshot.details[i] = details[index];
+                    snapshot.trains[i] = trains[index];
+                    snapshot.signWorlds[i] = signWorlds[index];
+                    System.arraycopy(signCoordinates, 3 * index, snapshot.signCoordinates, 3 * i, 3);
+                    i++;
+                }
+            }
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(TrainCarts.plugin, new Runnable() {
+            @Override
+            public void run() {
+                writeFile(file, snapshot);
+            }
+        });
+        return count;
+    }
+
+    private static boolean isDumped(int index, long minStartTime) {
+        return durations[index] >= 0 && (startTimes[index] - minStartTime) >= 0;
+    }
+
+    private static void writeFile(File file, Snapshot snapshot) {
+        StringBuilder text = new StringBuilder();
+        text.append("{\"traceEvents\":[");
+        for (int i = 0; i < snapshot.kinds.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append("\n{\"name\":\"").append(SPAN_NAMES[snapshot.kinds[i]]);
+            text.append("\",\"ph\":\"X\",\"pid\":0,\"tid\":0,\"ts\":").append(snapshot.startTimes[i] / 1000L);
+            text.append(",\"dur\":").append(snapshot.durations[i] / 1000L).append(",\"args\":{");
+            boolean hasArgs = false;
+            if (snapshot.trains[i] != null) {
+                hasArgs = appendArg(text, hasArgs, "train", snapshot.trains[i]);
+            }
+            if (snapshot.signWorlds[i] != null) {
+                hasArgs = appendArg(text, hasArgs, "sign", snapshot.signWorlds[i] + " " + snapshot.signCoordinates[3 * i] + " " +
+                        snapshot.signCoordinates[3 * i + 1] + " " + snapshot.signCoordinates[3 * i + 2]);
+            }
+            if (snapshot.details[i] != null) {
+                appendArg(text, hasArgs, "detail", snapshot.details[i]);
+            }
+            text.append("}}");
+        }
+        text.append("\n]}\n");
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8);
+            try {
+                writer.write(text.toString());
+            } finally {
+                writer.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            TrainCarts.plugin.log(Level.WARNING, "Failed to write trace to " + file + ": " + ex.getMessage());
+        }
+    }
+
+    private static boolean appendArg(StringBuilder text, boolean hasArgs, String name, String value) {
+        if (hasArgs) {
+            text.append(',');
+        }
+        text.append('"').append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+        return true;
+    }
+
+    /**
+     * Copy of the spans being written to file
+     */
+    private static class Snapshot {
+        public final byte[] kinds;
+        public final long[] startTimes;
+        public final long[] durations;
+        public final String[] details;
+        public final String[] trains;
+        public final String[] signWorlds;
+        public final int[] signCoordinates;
+
+        public Snapshot(int count) {
+            this.kinds = new byte[count];
+            this.startTimes = new long[count];
+            this.durations = new long[count];
+            this.details = new String[count];
+            this.trains = new String[count];
+            this.signWorlds = new String[count];
+            this.signCoordinates = new int[count * 3];
+        }
+    }
+}
@@ -12,11 +12,13 @@ import com.bergerkiller.bukkit.tc.commands.Commands;
 import com.bergerkiller.bukkit.tc.controller.*;
 import com.bergerkiller.bukkit.tc.detector.DetectorRegion;
 import com.bergerkiller.bukkit.tc.itemanimation.ItemAnimation;
+import com.bergerkiller.bukkit.tc.pathfinding.ArrivalPredictor;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
 import com.bergerkiller.bukkit.tc.pathfinding.PathProvider;
 import com.bergerkiller.bukkit.tc.portals.TCPortalManager;
 import com.bergerkiller.bukkit.tc.properties.CartPropertiesStore;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.rails.RailLogicCache;
 import com.bergerkiller.bukkit.tc.signactions.SignAction;
 import com.bergerkiller.bukkit.tc.signactions.SignActionDetector;
 import com.bergerkiller.bukkit.tc.signactions.SignActionSpawn;
@@ -45,8 +47,28 @@ public class TrainCarts extends PluginBase {
     private Task signtask;
     private Task autosaveTask;
     private TCPacketListener packetListener;
+    private RedstoneTracker redstoneTracker;
+    private RailLogicCache railLogicCache;
     private FileConfiguration config;
 
+    /**
+     * Gets the redstone tracker that keeps track of the power state of all signs
+     *
+     * @return redstone tracker, null if the plugin is not enabled
+     */
+    public RedstoneTracker getRedstoneTracker() {
+        return this.redstoneTracker;
+    }
+
+    /**
+     * Gets the cache storing the rail logic of rail blocks
+     *
+     * @return rail logic cache, null if the plugin is not enabled
+     */
+    public RailLogicCache getRailLogicCache() {
+        return this.railLogicCache;
+    }
+
     public static boolean canBreak(Material type) {
         return TCConfig.allowedBlockBreakTypes.contains(type);
     }
@@ -267,6 +289,16 @@ public class TrainCarts extends PluginBase {
         // Hackish fix the chunk persistence failing
         fixGroupTickTask = new TrainUpdateTask(this).start(1, 1);
 
+        // Keeps chunks loaded for trains that have keepChunksLoaded set
+        ChunkKeepAliveManager.init(this);
+        ArrivalPredictor.init(this);
+
+        // Periodically writes metrics to a file for scrapers to collect
+        TCMetrics.init(this);
+
+        // Records the time taken by trains and signs for finding the cause of lag
+        TraceRecorder.init(this);
+
         // Routinely saves TrainCarts changed state information to disk (autosave=true)
         autosaveTask = new AutosaveTask(this).start(TCConfig.autoSaveInterval, TCConfig.autoSaveInterval);
 
@@ -282,7 +314,8 @@ public class TrainCarts extends PluginBase {
         // Register listeners and commands
         this.register(packetListener = new TCPacketListener(), PacketType.IN_STEER_VEHICLE);
         this.register(TCListener.class);
-        this.register(RedstoneTracker.class);
+        this.register(redstoneTracker = new RedstoneTracker());
+        this.register(railLogicCache = new RailLogicCache());
         this.register("train", "cart");
         Conversion.registerConverters(MinecartMemberStore.class);
     }
@@ -291,32 +324,42 @@ public class TrainCarts extends PluginBase {
      * Saves all traincarts related information to file
      */
     public void save(boolean autosave) {
+        long time = System.nanoTime();
+
         //Save properties
         TrainProperties.save(autosave);
+        time = TCMetrics.onSaved("properties", time);
 
         //Save Train tickets
         TicketStore.save(autosave);
+        time = TCMetrics.onSaved("tickets", time);
 
         //Save destinations
         PathNode.save(autosave, getDataFolder() + File.separator + "destinations.dat");
+        time = TCMetrics.onSaved("destinations", time);
 
         //Save arrival times
         if (!autosave) {
             ArrivalSigns.save(getDataFolder() + File.separator + "arrivaltimes.txt");
+            time = TCMetrics.onSaved("arrivaltimes", time);
         }
 
         //Save spawn sign locations
         SignActionSpawn.save(autosave, getDataFolder() + File.separator + "spawnsigns.dat");
+        time = TCMetrics.onSaved("spawnsigns", time);
 
         //Save detector sign locations
         SignActionDetector.INSTANCE.save(autosave, getDataFolder() + File.separator + "detectorsigns.dat");
+        time = TCMetrics.onSaved("detectorsigns", time);
 
         //Save detector regions
         DetectorRegion.save(autosave, getDataFolder() + File.separator + "detectorregions.dat");
+        time = TCMetrics.onSaved("detectorregions", time);
 
         // Save train information
         if (!autosave) {
             OfflineGroupManager.save(getDataFolder() + File.separator + "trains.groupdata");
+            TCMetrics.onSaved("trains", time);
         }
     }
 
@@ -324,11 +367,17 @@ public class TrainCarts extends PluginBase {
         //Unregister listeners
         this.unregister(packetListener);
         packetListener = null;
+        redstoneTracker = null;
+        railLogicCache = null;
 
         //Stop tasks
         Task.stop(signtask);
         Task.stop(fixGroupTickTask);
         Task.stop(autosaveTask);
+        ChunkKeepAliveManager.deinit();
+        ArrivalPredictor.deinit();
+        TCMetrics.deinit();
+        TraceRecorder.deinit();
 
         //update max item stack
         if (TCConfig.maxMinecartStackSize != 1) {
@@ -2,6 +2,7 @@ package com.bergerkiller.bukkit.tc.actions;
 
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.utils.LaunchFunction;
+import com.bergerkiller.bukkit.tc.utils.LaunchProfile;
 import com.bergerkiller.bukkit.tc.utils.LauncherConfig;
 
 public class MemberActionLaunch extends MemberAction implements MovementAction {
@@ -17,6 +18,7 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
     private double lastVelocity;
     private double lastspeedlimit;
     private LaunchFunction function;
+    private LaunchProfile profile;
 
     public MemberActionLaunch() {
         this.init(LauncherConfig.createDefault(), 0.0);
@@ -109,7 +111,8 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
         }
 
         if (this.targettime >= 0) {
-            this.function.setTotalTime(this.targettime);
+            this.profile = LaunchProfile.forTime(this.function.getClass(),
+                    this.function.getStartVelocity(), this.function.getEndVelocity(), this.targettime);
         } else {
             // The world may never know why this is needed for trains >1 in size
             // ...if you know, let me know, k?
@@ -118,7 +121,8 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
             //    this.targetdistance += getMember().getEntity().getMovedDistance();
             //}
 
-            this.function.setTotalDistance(this.targetdistance);
+            this.profile = LaunchProfile.forDistance(this.function.getClass(),
+                    this.function.getStartVelocity(), this.function.getEndVelocity(), this.targetdistance);
         }
     }
 
@@ -143,6 +147,28 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
         return this.distance;
     }
 
+    /**
+     * Gets the launch profile that is followed, which stores the distance launched at every tick.
+     * This is only available once the action has started.
+     * 
+     * @return launch profile, or null if not yet started
+     */
+    public LaunchProfile getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * Gets the number of ticks remaining until this launch completes
+     * 
+     * @return remaining ticks, or 0 if not yet started
+     */
+    public int getRemainingTicks() {
+        if (this.profile == null) {
+            return 0;
+        }
+        return Math.max(0, this.profile.getTotalTime() - (this.elapsedTicks() - this.timeoffset));
+    }
+
     @Override
     public boolean update() {
         // Abort when derailed. We do permit vertical 'air-launching'
@@ -160,10 +186,12 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
 
             if (this.targettime > 0) {
                 // Launch from current speed to new speed limit in the time remaining
-                this.function.setTotalTime(this.targettime - this.timeoffset);
+                this.profile = LaunchProfile.forTime(this.function.getClass(),
+                        this.function.getStartVelocity(), this.function.getEndVelocity(), this.targettime - this.timeoffset);
             } else {
                 // Launch from current speed to new speed limit for the distance remaining
-                this.function.setTotalDistance(this.targetdistance - this.distanceoffset);
+                this.profile = LaunchProfile.forDistance(this.function.getClass(),
+                        this.function.getStartVelocity(), this.function.getEndVelocity(), this.targetdistance - this.distanceoffset);
             }
         }
 
@@ -178,14 +206,14 @@ public class MemberActionLaunch extends MemberAction implements MovementAction {
 
         // Check if we completed the function
         int time = this.elapsedTicks() - this.timeoffset;
-        if (time > this.function.getTotalTime()) {
+        if (time > this.profile.getTotalTime()) {
             // Finish with the desired end-velocity
             this.getGroup().setForwardForce(this.targetvelocity * this.getGroup().getUpdateSpeedFactor());
             return true;
         }
 
         // Update velocity based on the distance difference
-        this.lastVelocity = (this.function.getDistance(time) - this.distance + this.distanceoffset);
+        this.lastVelocity = (this.profile.getDistance(time) - this.distance + this.distanceoffset);
         this.getGroup().setForwardForce(this.lastVelocity * this.getGroup().getUpdateSpeedFactor());
 
         if (this.getGroup().isLastUpdateStep()) {
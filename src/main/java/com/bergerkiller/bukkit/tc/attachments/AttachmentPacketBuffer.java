@@ -0,0 +1,93 @@
+package com.bergerkiller.bukkit.tc.attachments;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.bukkit.entity.Player;
+
+import com.bergerkiller.bukkit.common.protocol.CommonPacket;
+import com.bergerkiller.bukkit.common.utils.PacketUtil;
+import com.bergerkiller.bukkit.tc.TCMetrics;
+
+/**
+ * Collects the packets attachments send to viewers while a train is synchronized.
+ * The packets are stored per viewer and sent together once the synchronization of the train
+ * is done, right after the movement packets of the carts themselves. A single packet instance
+ * is shared by all viewers it is sent to.<br>
+ * <br>
+ * Outside of {@link #begin()} and {@link #flush()}, packets are sent right away.
+ */
+public final class AttachmentPacketBuffer {
+    private static final Map<Player, ArrayList<CommonPacket>> buffered = new IdentityHashMap<>();
+    private static final ArrayDeque<ArrayList<CommonPacket>> unusedLists = new ArrayDeque<>();
+    private static int depth = 0;
+
+    private AttachmentPacketBuffer() {
+    }
+
+    /**
+     * Starts buffering packets. Every call must be followed by a call to {@link #flush()}.
+     */
+    public static void begin() {
+        depth++;
+    }
+
+    /**
+     * Stops buffering packets, and sends all buffered packets to their viewers
+     * when no more buffering is active.
+     */
+    public static void flush() {
+        if (depth > 0 && --depth > 0) {
+            return;
+        }
+        for (Map.Entry<Player, ArrayList<CommonPacket>> entry : buffered.entrySet()) {
+            Player viewer = entry.getKey();
+            ArrayList<CommonPacket> packets = entry.getValue();
+            for (CommonPacket packet : packets) {
+                PacketUtil.sendPacket(viewer, packet);
+            }
+            TCMetrics.NETWORK_PACKETS.add("attachment", packets.size());
+            packets.clear();
+            unusedLists.add(packets);
+        }
+        buffered.clear();
+    }
+
+    /**
+     * Sends a packet to a viewer
+     *
+     * @param viewer to send to
+     * @param packet to send
+     */
+    public static void send(Player viewer, CommonPacket packet) {
+        if (depth == 0) {
+            PacketUtil.sendPacket(viewer, packet);
+            TCMetrics.NETWORK_PACKETS.inc("attachment");
+            return;
+        }
+        ArrayList<CommonPacket> packets = buffered.get(viewer);
+        if (packets == null) {
+            packets = unusedLists.poll();
+            if (packets == null) {
+                packets = new ArrayList<CommonPacket>(4);
+            }
+            buffered.put(viewer, packets);
+        }
+        packets.add(packet);
+    }
+
+    /**
+     * Sends the same packet to multiple viewers
+     *
+     * @param viewers to send to
+     * @param packet to send
+     */
+    public static void send(Collection<Player> viewers, CommonPacket packet) {
+        for (Player viewer : viewers) {
+            send(viewer, packet);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bergerkiller.bukkit.tc.attachments;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.bergerkiller.bukkit.common.math.Matrix4x4;
+
+/**
+ * Computes the absolute transforms of a tree of attachments. Every attachment is positioned
+ * relative to its parent using its local transform. The absolute transforms are computed in a
+ * single pass from the root to the leaves, and only for the attachments of which the parent
+ * or local transform changed since the previous update. The computed transforms are shared
+ * by the attachments and all their viewers.
+ */
+public class AttachmentTree {
+    private final List<Node> nodes = new ArrayList<Node>();
+    private final Map<CartAttachment, Node> nodesByAttachment = new IdentityHashMap<CartAttachment, Node>();
+    private Matrix4x4 rootTransform = null;
+
+    /**
+     * Rebuilds the tree. Must be called when attachments are added or removed.
+     *
+     * @param roots attachments attached directly to the root
+     */
+    public void rebuild(List<? extends CartAttachment> roots) {
+        this.nodes.clear();
+        this.nodesByAttachment.clear();
+        this.rootTransform = null;
+        for (CartAttachment attachment : roots) {
+            this.add(null, attachment);
+        }
+    }
+
+    private void add(Node parent, CartAttachment attachment) {
+        Node node = new Node(parent, attachment);
+        this.nodes.add(node);
+        this.nodesByAttachment.put(attachment, node);
+        for (CartAttachment child : attachment.getChildren()) {
+            this.add(node, child);
+        }
+    }
+
+    /**
+     * Gets the absolute transform of an attachment computed during the last update
+     *
+     * @param attachment to get the transform of
+     * @return absolute transform, or null if not known. Must not be modified.
+     */
+    public Matrix4x4 getTransform(CartAttachment attachment) {
+        Node node = this.nodesByAttachment.get(attachment);
+        return (node == null) ? null : node.transform;
+    }
+
+    /**
+     * Updates the absolute transforms of all attachments, notifying the attachments
+     * of which the transform changed.
+     *
+     * @param rootTransform absolute transform of the root. When the root did not move,
+     *                      the same instance as during the previous update must be passed.
+     */
+    public void update(Matrix4x4 rootTransform) {
+        boolean rootChanged = (this.rootTransform != rootTransform);
+        this.rootTransform = rootTransform;
+
+        // Parents are always before their children, so one pass is enough
+        for (Node node : this.nodes) {
+            Matrix4x4 local = node.attachment.getLocalTransform();
+            Matrix4x4 parentTransform = (node.parent == null) ? rootTransform : node.parent.transform;
+            boolean parentChanged = (node.parent == null) ? rootChanged : node.parent.changed;
+            node.changed = parentChanged || node.transform == null || local != node.local;
+            if (!node.changed) {
+                continue;
+            }
+            node.local = local;
+            if (local == null) {
+                node.transform = parentTransform;
+            } else {
+                node.transform = parentTransform.clone();
+                node.transform.multiply(local);
+            }
+            node.attachment.onTransformChanged(node.transform);
+        }
+    }
+
+    private static class Node {
+        public final Node parent;
+        public final CartAttachment attachment;
+        public Matrix4x4 local = null;
+        public Matrix4x4 transform = null;
+        public boolean changed = false;
+
+        public Node(Node parent, CartAttachment attachment) {
+            this.parent = parent;
+            this.attachment = attachment;
+        }
+    }
+}
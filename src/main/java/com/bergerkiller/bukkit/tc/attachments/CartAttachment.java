@@ -1,11 +1,17 @@
 package com.bergerkiller.bukkit.tc.attachments;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.bukkit.entity.Player;
 
 import com.bergerkiller.bukkit.common.controller.Tickable;
+import com.bergerkiller.bukkit.common.math.Matrix4x4;
 
 /**
- * An element that is attached to a Minecart, moving along with it
+ * An element that is attached to a Minecart, moving along with it.
+ * Attachments can have child attachments, which are positioned relative to their parent.
+ * See {@link AttachmentTree}.
  */
 public interface CartAttachment extends Tickable {
 
@@ -14,6 +20,46 @@ public interface CartAttachment extends Tickable {
 
     void onSyncAtt(boolean absolute);
 
+    /**
+     * Gets the attachments that are attached to this attachment.
+     * By default an attachment has no children.
+     * 
+     * @return child attachments
+     */
+    default List<CartAttachment> getChildren() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the position and rotation of this attachment relative to its parent.
+     * When this changes, a new instance must be returned.
+     * By default an attachment is positioned at its parent.
+     * 
+     * @return local transform, or null if this attachment is positioned at its parent
+     */
+    default Matrix4x4 getLocalTransform() {
+        return null;
+    }
+
+    /**
+     * Called before synchronizing when the absolute position or rotation of this attachment changed
+     * 
+     * @param transform absolute transform of this attachment, must not be modified
+     */
+    default void onTransformChanged(Matrix4x4 transform) {
+    }
+
+    /**
+     * Gets the distance in blocks between a viewer and the cart within which this attachment
+     * is made visible to the viewer. Viewers further away do not see this attachment.
+     * By default attachments are visible to all viewers of the cart.
+     * 
+     * @return view distance, Double.MAX_VALUE to show to all viewers
+     */
+    default double getViewDistance() {
+        return Double.MAX_VALUE;
+    }
+
     /**
      * Makes this attachment visible to a new player.
      * 
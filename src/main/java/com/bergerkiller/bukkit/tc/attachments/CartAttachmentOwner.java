@@ -16,7 +16,8 @@ public interface CartAttachmentOwner {
     public void onAttachmentsChanged();
 
     /**
-     * Gets the absolute position transformation that is applied to children of this owner
+     * Gets the absolute position transformation that is applied to children of this owner.
+     * The same instance is returned while the owner does not move, and it must not be modified.
      * 
      * @param motion whether motion prediction must be performed (TODO: Remove this!)
      * @return absolute position transformation matrix
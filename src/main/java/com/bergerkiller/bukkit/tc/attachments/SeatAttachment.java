@@ -8,6 +8,7 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
+import com.bergerkiller.bukkit.common.math.Matrix4x4;
 import com.bergerkiller.bukkit.common.protocol.CommonPacket;
 import com.bergerkiller.bukkit.common.protocol.PacketType;
 import com.bergerkiller.bukkit.common.utils.EntityUtil;
@@ -38,6 +39,7 @@ public class SeatAttachment implements CartAttachment {
     private int _fakeEntityLastPitch = 0;
     private int _fakeEntityLastHeadYaw = 0;
     private VirtualEntity _fakeCameraMount = null;
+    private Matrix4x4 _transform = null;
     private final Set<Player> _viewers = new HashSet<Player>();
     private CartAttachmentOwner owner;
 
@@ -234,7 +236,8 @@ public class SeatAttachment implements CartAttachment {
         }
 
         // Refresh head rotation and body yaw/pitch for a fake player entity
-        if (this._entity instanceof Player && this._fakeEntityId != -1) {
+        // The packets are buffered, and sent to every viewer together with the movement of the cart
+        if (this._entity instanceof Player && this._fakeEntityId != -1 && !this._viewers.isEmpty()) {
             EntityHandle realPlayer = EntityHandle.fromBukkit(this._entity);
             float yaw = realPlayer.getYaw();
             float pitch = realPlayer.getPitch();
@@ -256,9 +259,7 @@ public class SeatAttachment implements CartAttachment {
                 lookPacket.write(PacketType.OUT_ENTITY_LOOK.entityId, this._fakeEntityId);
                 lookPacket.write(PacketPlayOutEntityHandle.T.dyaw_raw.toFieldAccessor(), (byte) protYaw);
                 lookPacket.write(PacketPlayOutEntityHandle.T.dpitch_raw.toFieldAccessor(), (byte) protPitch);
-                for (Player viewer : this._viewers) {
-                    PacketUtil.sendPacket(viewer, lookPacket);
-                }
+                AttachmentPacketBuffer.send(this._viewers, lookPacket);
                 this._fakeEntityLastYaw = protYaw;
                 this._fakeEntityLastPitch = protPitch;
             }
@@ -267,24 +268,28 @@ public class SeatAttachment implements CartAttachment {
                 CommonPacket headPacket = PacketType.OUT_ENTITY_HEAD_ROTATION.newInstance();
                 headPacket.write(PacketType.OUT_ENTITY_HEAD_ROTATION.entityId, this._fakeEntityId);
                 headPacket.write(PacketType.OUT_ENTITY_HEAD_ROTATION.headYaw, (byte) protHeadRot);
-                for (Player viewer : this._viewers) {
-                    PacketUtil.sendPacket(viewer, headPacket);
-                }
+                AttachmentPacketBuffer.send(this._viewers, headPacket);
                 this._fakeEntityLastHeadYaw = protHeadRot;
             }
+        }
+    }
 
-
+    @Override
+    public void onTransformChanged(Matrix4x4 transform) {
+        this._transform = transform;
+
+        // When upside-down, we have a virtual camera for the player
+        // This is controlled by having the player mounted on an invisible entity that we control
+        // This entity must be moved here to have the correct position of the camera
+        if (this._fakeCameraMount != null) {
+            this._fakeCameraMount.updatePosition(transform);
         }
     }
 
     @Override
     public void onSyncAtt(boolean absolute) {
         if (this._entity instanceof Player && this._fakeEntityId != -1) {
-            // When upside-down, we have a virtual camera for the player
-            // This is controlled by having the player mounted on an invisible entity that we control
-            // This entity must be updated here to have the correct position of the camera
             if (this._fakeCameraMount != null) {
-                this._fakeCameraMount.updatePosition(this.owner.getTransform(true));
                 this._fakeCameraMount.syncPosition(this._viewers, absolute);
             }
         }
@@ -344,6 +349,11 @@ public class SeatAttachment implements CartAttachment {
                 this._fakeCameraMount.getMetaData().set(EntityLivingHandle.DATA_HEALTH, 10.0F);
                 this._fakeCameraMount.setPassengers(new int[] {this._entity.getEntityId()});
                 this._fakeCameraMount.spawn(viewer, owner.getLastMovement());
+
+                // Move it to the current position of the seat during the next synchronization
+                if (this._transform != null) {
+                    this._fakeCameraMount.updatePosition(this._transform);
+                }
             }
 
             // Respawn an upside-down player
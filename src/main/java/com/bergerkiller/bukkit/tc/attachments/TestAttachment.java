@@ -14,6 +14,7 @@ import org.bukkit.util.Vector;
 import com.bergerkiller.bukkit.common.math.Matrix4x4;
 import com.bergerkiller.bukkit.common.utils.PacketUtil;
 import com.bergerkiller.bukkit.common.wrappers.DataWatcher;
+import com.bergerkiller.bukkit.tc.TCConfig;
 import com.bergerkiller.generated.net.minecraft.server.EntityArmorStandHandle;
 import com.bergerkiller.generated.net.minecraft.server.EntityHandle;
 import com.bergerkiller.generated.net.minecraft.server.PacketPlayOutEntityEquipmentHandle;
@@ -53,6 +54,11 @@ public class TestAttachment implements CartAttachment {
         }
     }
 
+    @Override
+    public double getViewDistance() {
+        return TCConfig.attachmentViewDistance;
+    }
+
     @Override
     public boolean addViewer(Player viewer) {
         if (!this._viewers.add(viewer)) {
@@ -123,7 +123,8 @@ public class VirtualEntity {
     }
 
     public void syncPosition(Collection<Player> viewers, boolean absolute) {
-        if (!viewers.isEmpty()) {
+        boolean moved = (this.liveAbsX != this.syncAbsX || this.liveAbsY != this.syncAbsY || this.liveAbsZ != this.syncAbsZ);
+        if (!viewers.isEmpty() && (absolute || moved)) {
             CommonPacket packet;
             if (absolute) {
                 packet = PacketType.OUT_ENTITY_TELEPORT.newInstance(this.entityId, this.liveAbsX, this.liveAbsY, this.liveAbsZ, 0.0f, 0.0f, false);
@@ -133,9 +134,7 @@ public class VirtualEntity {
                         (this.liveAbsY - this.syncAbsY),
                         (this.liveAbsZ - this.syncAbsZ), false);
             }
-            for (Player viewer : viewers) {
-                PacketUtil.sendPacket(viewer, packet);
-            }
+            AttachmentPacketBuffer.send(viewers, packet);
         }
 
         this.syncAbsX = this.liveAbsX;
@@ -3,11 +3,14 @@ package com.bergerkiller.bukkit.tc.commands;
 import com.bergerkiller.bukkit.common.MessageBuilder;
 import com.bergerkiller.bukkit.common.internal.CommonPlugin;
 import com.bergerkiller.bukkit.common.permissions.NoPermissionException;
+import com.bergerkiller.bukkit.common.utils.ParseUtil;
 import com.bergerkiller.bukkit.common.utils.StringUtil;
 import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.tc.Localization;
 import com.bergerkiller.bukkit.tc.Permission;
 import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TCMetrics;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroupStore;
@@ -28,6 +31,7 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Minecart;
 import org.bukkit.entity.Player;
 
+import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
@@ -107,6 +111,27 @@ public class GlobalCommands {
             TrainCarts.plugin.save(false);
             sender.sendMessage(ChatColor.YELLOW + "TrainCarts' information has been saved to file.");
             return true;
+        } else if (args[0].equals("metrics")) {
+            Permission.COMMAND_METRICS.handle(sender);
+            StringBuilder text = new StringBuilder();
+            TCMetrics.write(text);
+            for (String line : text.toString().split("\n")) {
+                if (!line.startsWith("#")) {
+                    sender.sendMessage(ChatColor.YELLOW + line);
+                }
+            }
+            return true;
+        } else if (args[0].equals("trace") && args.length >= 2 && args[1].equals("dump")) {
+            Permission.COMMAND_TRACE.handle(sender);
+            if (TCConfig.traceSampleInterval <= 0) {
+                sender.sendMessage(ChatColor.RED + "Tracing is disabled in the configuration (traceSampleInterval)");
+                return true;
+            }
+            double seconds = (args.length >= 3) ? ParseUtil.parseDouble(args[2], 10.0) : 10.0;
+            File file = new File(TrainCarts.plugin.getDataFolder(), "trace-" + System.currentTimeMillis() + ".json");
+            int count = TraceRecorder.dump(file, seconds);
+            sender.sendMessage(ChatColor.YELLOW + "Writing " + count + " traced timings of the last " + seconds + " seconds to " + file.getName());
+            return true;
         } else if (args[0].equals("fixbugged")) {
             Permission.COMMAND_FIXBUGGED.handle(sender);
             for (World world : WorldUtil.getWorlds()) {
@@ -124,12 +149,17 @@ public class GlobalCommands {
                 listTickets(sender);
             } else {
                 // Trains
-                int count = 0, moving = 0;
+                int count = 0, moving = 0, sleeping = 0, awake = 0;
                 for (MinecartGroup group : MinecartGroupStore.getGroups()) {
                     count++;
                     if (group.isMoving()) {
                         moving++;
                     }
+                    if (group.isSleeping()) {
+                        sleeping++;
+                    } else {
+                        awake++;
+                    }
                     // Get properties: ensures that ALL trains are listed
                     group.getProperties();
                 }
@@ -145,6 +175,8 @@ public class GlobalCommands {
                 MessageBuilder builder = new MessageBuilder();
                 builder.green("There are ").yellow(count).green(" trains on this server (of which ");
                 builder.yellow(moving).green(" are moving)");
+                builder.newLine().green("Of the loaded trains ").yellow(awake).green(" are awake and ");
+                builder.yellow(sleeping).green(" are sleeping");
                 builder.newLine().green("There are ").yellow(minecartCount).green(" minecart entities");
                 builder.send(sender);
                 // Show additional information about owned trains to players
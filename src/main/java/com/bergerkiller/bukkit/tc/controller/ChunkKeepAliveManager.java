@@ -0,0 +1,199 @@
+package com.bergerkiller.bukkit.tc.controller;
+
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.tc.TCConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+/**
+ * Keeps chunks loaded for trains that have keepChunksLoaded set.
+ * Trains hold reference-counted tickets on the chunks around them. A chunk with a ticket
+ * is not allowed to unload. When the last ticket is released, the chunk is kept loaded for
+ * a short grace period before it is handed back to the server, so trains moving back and forth
+ * over a chunk boundary do not cause chunks to load and unload repeatedly.<br>
+ * <br>
+ * Chunks can also be requested ahead of time. These are loaded a few at a time every tick,
+ * and are kept for the grace period so they are resident once a train arrives.
+ */
+public class ChunkKeepAliveManager {
+    private static final Map<UUID, Map<Long, Ticket>> tickets = new HashMap<>();
+    private static final Queue<PreloadRequest> preloadQueue = new ArrayDeque<>();
+    private static final int RELEASE_CHECK_INTERVAL = 20;
+    private static Task updateTask = null;
+    private static int currentTick = 0;
+
+    public static void init(JavaPlugin plugin) {
+        updateTask = new Task(plugin) {
+            @Override
+            public void run() {
+                update();
+            }
+        }.start(1, 1);
+    }
+
+    public static void deinit() {
+        Task.stop(updateTask);
+        updateTask = null;
+        tickets.clear();
+        preloadQueue.clear();
+    }
+
+    /**
+     * Acquires a ticket on a chunk, loading it right away if it is not already loaded
+     *
+     * @param world the chunk is in
+     * @param chunkKey of the chunk, see {@link MathUtil#longHashToLong(int, int)}
+     */
+    public static void acquire(World world, long chunkKey) {
+        Ticket ticket = getTicket(world, chunkKey, true);
+        ticket.refs++;
+        int cx = MathUtil.longHashMsw(chunkKey);
+        int cz = MathUtil.longHashLsw(chunkKey);
+        if (!world.isChunkLoaded(cx, cz)) {
+            world.getChunkAt(cx, cz);
+        }
+    }
+
+    /**
+     * Releases a ticket on a chunk previously acquired using {@link #acquire(World, long)}.
+     * The chunk is allowed to unload after the grace period.
+     *
+     * @param world the chunk is in
+     * @param chunkKey of the chunk
+     */
+    public static void release(World world, long chunkKey) {
+        Ticket ticket = getTicket(world, chunkKey, false);
+        if (ticket != null && ticket.refs > 0 && --ticket.refs == 0) {
+            ticket.releaseTick = currentTick + TCConfig.keepChunksLoadedGracePeriod;
+        }
+    }
+
+    /**
+     * Requests a chunk to be loaded ahead of time. The chunk is loaded during one of the
+     * following ticks, and is kept loaded for the grace period.
+     *
+     * @param world the chunk is in
+     * @param cx chunk x-coordinate
+     * @param cz chunk z-coordinate
+     */
+    public static void preload(World world, int cx, int cz) {
+        long chunkKey = MathUtil.longHashToLong(cx, cz);
+        Ticket ticket = getTicket(world, chunkKey, false);
+        if (ticket == null) {
+            ticket = getTicket(world, chunkKey, true);
+            ticket.releaseTick = currentTick + TCConfig.keepChunksLoadedGracePeriod;
+            preloadQueue.add(new PreloadRequest(world.getUID(), cx, cz));
+        } else if (ticket.refs == 0) {
+            ticket.releaseTick = currentTick + TCConfig.keepChunksLoadedGracePeriod;
+        }
+    }
+
+    /**
+     * Checks whether a chunk is kept loaded by a train, or is still within its grace period
+     *
+     * @param world the chunk is in
+     * @param cx chunk x-coordinate
+     * @param cz chunk z-coordinate
+     * @return True if the chunk should stay loaded
+     */
+    public static boolean isKeptLoaded(World world, int cx, int cz) {
+        return getTicket(world, MathUtil.longHashToLong(cx, cz), false) != null;
+    }
+
+    /**
+     * Gets the number of chunks currently kept loaded
+     *
+     * @return kept chunk count
+     */
+    public static int getKeptCount() {
+        int count = 0;
+        for (Map<Long, Ticket> worldTickets : tickets.values()) {
+            count += worldTickets.size();
+        }
+        return count;
+    }
+
+    private static Ticket getTicket(World world, long chunkKey, boolean create) {
+        Map<Long, Ticket> worldTickets = tickets.get(world.getUID());
+        if (worldTickets == null) {
+            if (!create) {
+                return null;
+            }
+            worldTickets = new HashMap<>();
+            tickets.put(world.getUID(), worldTickets);
+        }
+        Ticket ticket = worldTickets.get(chunkKey);
+        if (ticket == null && create) {
+            ticket = new Ticket();
+            worldTickets.put(chunkKey, ticket);
+        }
+        return ticket;
+    }
+
+    private static void update() {
+        currentTick++;
+
+        // Load a limited number of requested chunks every tick
+        int budget = TCConfig.chunkPreloadRate;
+        PreloadRequest request;
+        while (budget > 0 && (request = preloadQueue.poll()) != null) {
+            World world = Bukkit.getWorld(request.worldUUID);
+            if (world != null && !world.isChunkLoaded(request.cx, request.cz)) {
+                world.loadChunk(request.cx, request.cz, true);
+                budget--;
+            }
+        }
+
+        // Hand back chunks whose grace period has ended
+        if ((currentTick % RELEASE_CHECK_INTERVAL) != 0) {
+            return;
+        }
+        Iterator<Map.Entry<UUID, Map<Long, Ticket>>> worldIter = tickets.entrySet().iterator();
+        while (worldIter.hasNext()) {
+            Map.Entry<UUID, Map<Long, Ticket>> worldEntry = worldIter.next();
+            World world = Bukkit.getWorld(worldEntry.getKey());
+            if (world == null) {
+                worldIter.remove();
+                continue;
+            }
+            Iterator<Map.Entry<Long, Ticket>> iter = worldEntry.getValue().entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Long, Ticket> entry = iter.next();
+                Ticket ticket = entry.getValue();
+                if (ticket.refs == 0 && currentTick >= ticket.releaseTick) {
+                    iter.remove();
+                    long chunkKey = entry.getKey().longValue();
+                    world.unloadChunkRequest(MathUtil.longHashMsw(chunkKey), MathUtil.longHashLsw(chunkKey));
+                }
+            }
+            if (worldEntry.getValue().isEmpty()) {
+                worldIter.remove();
+            }
+        }
+    }
+
+    private static class Ticket {
+        public int refs = 0;
+        public int releaseTick = 0;
+    }
+
+    private static class PreloadRequest {
+        public final UUID worldUUID;
+        public final int cx, cz;
+
+        public PreloadRequest(UUID worldUUID, int cx, int cz) {
+            this.worldUUID = worldUUID;
+            this.cx = cx;
+            this.cz = cz;
+        }
+    }
+}
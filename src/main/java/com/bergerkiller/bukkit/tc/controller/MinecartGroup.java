@@ -12,7 +12,10 @@ import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.tc.exception.GroupUnloadedException;
 import com.bergerkiller.bukkit.tc.exception.MemberMissingException;
 import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.TrainCarts;
+import com.bergerkiller.bukkit.tc.actions.GroupActionWaitForever;
+import com.bergerkiller.bukkit.tc.controller.components.ActionTracker;
 import com.bergerkiller.bukkit.tc.controller.components.ActionTrackerGroup;
 import com.bergerkiller.bukkit.tc.controller.components.BlockTrackerGroup;
 import com.bergerkiller.bukkit.tc.controller.components.RailTrackerGroup;
@@ -25,6 +28,7 @@ import com.bergerkiller.bukkit.tc.properties.TrainPropertiesStore;
 import com.bergerkiller.bukkit.tc.signactions.mutex.MutexZone;
 import com.bergerkiller.bukkit.tc.signactions.mutex.MutexZoneCache;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.utils.ChunkArea;
 import com.bergerkiller.bukkit.tc.utils.TrackIterator;
 import com.bergerkiller.bukkit.tc.utils.TrackWalkIterator;
 import org.bukkit.Chunk;
@@ -48,8 +52,8 @@ import java.util.logging.Level;
 
 public class MinecartGroup extends MinecartGroupStore implements IPropertiesHolder {
     private static final long serialVersionUID = 3;
-    private static final HashSet<IntVector2> previousChunksBuffer = new HashSet<>(50);
     private static final HashSet<IntVector2> newChunksBuffer = new HashSet<>(50);
+    private static final HashSet<Long> chunkKeyBuffer = new HashSet<>(50);
     protected final ToggledState networkInvalid = new ToggledState();
     protected final ToggledState ticked = new ToggledState();
     private final BlockTrackerGroup blockTracker = new BlockTrackerGroup(this);
@@ -61,6 +65,17 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
     private int teleportImmunityTick = 0;
     private double updateSpeedFactor = 1.0;
     private boolean lastUpdateStep = true;
+    private boolean sleeping = false;
+    private int sleepTicks = 0;
+    private World chunkIndexWorld = null;
+    private HashSet<Long> chunkIndexKeys = new HashSet<>();
+    private boolean chunkIndexDirty = true;
+    private World chunkTicketWorld = null;
+    private final HashSet<Long> chunkTicketKeys = new HashSet<>();
+    private Block preloadHead = null;
+    private Block preloadEnd = null;
+    private BlockFace preloadEndDirection = null;
+    private double preloadAhead = 0.0;
 
     protected MinecartGroup() {
         this.ticked.set();
@@ -171,9 +186,14 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
     }
 
     private void addMember(MinecartMember<?> member) {
+        this.wakeUp();
+        this.chunkIndexDirty = true;
         member.setGroup(this);
         this.getBlockTracker().updatePosition();
         this.getProperties().add(member);
+        if (groups.contains(this)) {
+            this.refreshChunkIndex();
+        }
     }
 
     public void add(int index, MinecartMember<?> member) {
@@ -281,6 +301,8 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         this.getProperties().remove(member);
         this.getActions().removeActions(member);
         this.getBlockTracker().updatePosition();
+        this.wakeUp();
+        this.chunkIndexDirty = true;
         member.group = null;
         return member;
     }
@@ -322,7 +344,7 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         //Remove if empty or not allowed, else add
         if (gnew.isValid()) {
             //Add the group
-            groups.add(gnew);
+            addGroup(gnew);
 
             //Set the new group properties
             gnew.getProperties().load(this.getProperties());
@@ -355,6 +377,8 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         if (!groups.remove(this)) {
             return; // Already removed
         }
+        this.removeFromChunkIndex();
+        this.releaseChunkTickets();
         GroupRemoveEvent.call(this);
         this.clear();
         if (this.prop != null) {
@@ -393,6 +417,8 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         // Unload
         this.stop(true);
         groups.remove(this);
+        this.removeFromChunkIndex();
+        this.releaseChunkTickets();
         for (MinecartMember<?> member : this) {
             member.group = null;
             member.unloaded = true;
@@ -468,6 +494,7 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
             return;
         }
         this.teleportImmunityTick = 10;
+        this.wakeUp();
         this.getBlockTracker().clear();
         this.getBlockTracker().updatePosition();
         this.breakPhysics();
@@ -511,6 +538,7 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
     }
 
     public void reverse() {
+        this.wakeUp();
         for (MinecartMember<?> mm : this) {
             mm.reverse();
         }
@@ -518,6 +546,7 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
     }
 
     public void setForwardForce(double force) {
+        this.wakeUp();
         for (MinecartMember<?> mm : this) {
             final double currvel = mm.getForce();
             if (currvel <= 0.01 || Math.abs(force) < 0.01) {
@@ -766,6 +795,202 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         for (MinecartMember<?> mm : this) mm.loadChunks();
     }
 
+    /**
+     * Collects the chunks around all members of this group and registers them with the chunk index
+     * used by {@link MinecartGroupStore#getGroupsNearChunk(World, int, int)}
+     */
+    protected void refreshChunkIndex() {
+        World world = this.getWorld();
+        if (world == null) {
+            this.removeFromChunkIndex();
+            return;
+        }
+        newChunksBuffer.clear();
+        for (MinecartMember<?> mm : this) {
+            mm.updateChunks();
+            mm.addChunks(newChunksBuffer);
+        }
+        this.updateChunkIndex(world, newChunksBuffer);
+    }
+
+    /**
+     * Updates the chunks this group is registered in with the chunk index
+     * used by {@link MinecartGroupStore#getGroupsNearChunk(World, int, int)}
+     * 
+     * @param world the group is in
+     * @param chunks the group is near
+     */
+    private void updateChunkIndex(World world, Collection<IntVector2> chunks) {
+        this.chunkIndexDirty = false;
+        if (world != this.chunkIndexWorld) {
+            this.removeFromChunkIndex();
+            this.chunkIndexWorld = world;
+        }
+        HashSet<Long> newKeys = chunkKeyBuffer;
+        newKeys.clear();
+        for (IntVector2 chunk : chunks) {
+            newKeys.add(MathUtil.longHashToLong(chunk.x, chunk.z));
+        }
+        for (Long key : this.chunkIndexKeys) {
+            if (!newKeys.contains(key)) {
+                removeFromChunkIndex(world, key.longValue(), this);
+            }
+        }
+        for (Long key : newKeys) {
+            if (!this.chunkIndexKeys.contains(key)) {
+                addToChunkIndex(world, key.longValue(), this);
+            }
+        }
+        this.chunkIndexKeys.clear();
+        this.chunkIndexKeys.addAll(newKeys);
+    }
+
+    /**
+     * Acquires tickets for the chunks around this group that it did not have yet,
+     * and releases the tickets of the chunks it left. Chunks the members are heading
+     * towards are requested to be loaded ahead of time.
+     * 
+     * @param world the group is in
+     */
+    private void updateChunkTickets(World world) {
+        if (world != this.chunkTicketWorld) {
+            this.releaseChunkTickets();
+            this.chunkTicketWorld = world;
+        }
+        Iterator<Long> iter = this.chunkTicketKeys.iterator();
+        while (iter.hasNext()) {
+            Long key = iter.next();
+            if (!this.chunkIndexKeys.contains(key)) {
+                iter.remove();
+                ChunkKeepAliveManager.release(world, key.longValue());
+            }
+        }
+        for (Long key : this.chunkIndexKeys) {
+            if (this.chunkTicketKeys.add(key)) {
+                ChunkKeepAliveManager.acquire(world, key.longValue());
+            }
+        }
+        this.preloadChunksAhead(world);
+    }
+
+    /**
+     * Follows the track in front of this group for the distance it will travel in the next
+     * few seconds at its current speed, and requests the chunks around that track to be
+     * loaded ahead of time. This is only done when the head of the train moves into a
+     * different chunk. The track is then followed further from where the previous walk ended,
+     * for the distance the head moved since, so every part of the track is walked only once.
+     * The track is only followed through loaded chunks; the chunks where it leaves the loaded
+     * area are requested, and the next time this is called the track can be followed further.
+     * 
+     * @param world the group is in
+     */
+    private void preloadChunksAhead(World world) {
+        if (TCConfig.chunkPreloadSeconds <= 0.0 || this.isEmpty()) {
+            return;
+        }
+        MinecartMember<?> head = this.head();
+        Block headBlock = head.getBlock();
+        if (this.preloadHead != null && this.preloadHead.getWorld() == world &&
+                (this.preloadHead.getX() >> 4) == (headBlock.getX() >> 4) &&
+                (this.preloadHead.getZ() >> 4) == (headBlock.getZ() >> 4)) {
+            return; // Head is still in the same chunk
+        }
+        double speed = Math.min(this.getAverageForce(), this.getProperties().getSpeedLimit());
+        int maxDistance = (int) (speed * 20.0 * TCConfig.chunkPreloadSeconds);
+        if (maxDistance <= 0) {
+            this.preloadHead = null;
+            return;
+        }
+
+        // Continue from where the previous walk ended, as long as the head moves towards it
+        Block start;
+        BlockFace direction;
+        int distance;
+        if (this.preloadHead != null && this.preloadEnd != null && this.preloadEnd.getWorld() == world &&
+                distanceSquared(headBlock, this.preloadEnd) < distanceSquared(this.preloadHead, this.preloadEnd)) {
+            this.preloadAhead -= Math.sqrt(distanceSquared(headBlock, this.preloadHead));
+            start = this.preloadEnd;
+            direction = this.preloadEndDirection;
+            distance = maxDistance - (int) this.preloadAhead;
+        } else {
+            this.preloadAhead = 0.0;
+            start = headBlock;
+            direction = head.getDirectionTo();
+            distance = maxDistance;
+        }
+        this.preloadHead = headBlock;
+        if (distance <= 0) {
+            return;
+        }
+
+        TrackIterator iter = new TrackIterator(start, direction, distance, true);
+        int lastChunkX = start.getX() >> 4;
+        int lastChunkZ = start.getZ() >> 4;
+        while (iter.hasNext()) {
+            Block rail = iter.next();
+            int cx = rail.getX() >> 4;
+            int cz = rail.getZ() >> 4;
+            if (cx != lastChunkX || cz != lastChunkZ) {
+                lastChunkX = cx;
+                lastChunkZ = cz;
+                preloadChunkArea(world, cx, cz);
+            }
+        }
+        this.preloadAhead += iter.getDistance();
+        Block pos = iter.currentPos();
+        BlockFace dir = iter.currentDirection();
+        if (pos != null && dir != null) {
+            this.preloadEnd = pos;
+            this.preloadEndDirection = dir;
+            if (iter.getDistance() < distance) {
+                // Track ended or continues into chunks that are not loaded yet
+                preloadChunkArea(world, (pos.getX() + dir.getModX()) >> 4, (pos.getZ() + dir.getModZ()) >> 4);
+            }
+        }
+    }
+
+    private static int distanceSquared(Block a, Block b) {
+        int dx = a.getX() - b.getX();
+        int dy = a.getY() - b.getY();
+        int dz = a.getZ() - b.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static void preloadChunkArea(World world, int midX, int midZ) {
+        for (int cx = -ChunkArea.CHUNK_RANGE; cx <= ChunkArea.CHUNK_RANGE; cx++) {
+            for (int cz = -ChunkArea.CHUNK_RANGE; cz <= ChunkArea.CHUNK_RANGE; cz++) {
+                ChunkKeepAliveManager.preload(world, midX + cx, midZ + cz);
+            }
+        }
+    }
+
+    /**
+     * Releases all the chunk tickets held by this group
+     */
+    private void releaseChunkTickets() {
+        if (this.chunkTicketWorld != null) {
+            for (Long key : this.chunkTicketKeys) {
+                ChunkKeepAliveManager.release(this.chunkTicketWorld, key.longValue());
+            }
+            this.chunkTicketWorld = null;
+        }
+        this.chunkTicketKeys.clear();
+    }
+
+    /**
+     * Removes this group from the chunk index
+     */
+    private void removeFromChunkIndex() {
+        if (this.chunkIndexWorld != null) {
+            for (Long key : this.chunkIndexKeys) {
+                removeFromChunkIndex(this.chunkIndexWorld, key.longValue(), this);
+            }
+            this.chunkIndexWorld = null;
+        }
+        this.chunkIndexKeys.clear();
+        this.chunkIndexDirty = true;
+    }
+
     public boolean isInChunk(Chunk chunk) {
         return this.isInChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
     }
@@ -784,9 +1009,95 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
 
     @Override
     public void onPropertiesChanged() {
+        this.wakeUp();
         this.getBlockTracker().update();
     }
 
+    /**
+     * Gets whether this train is sleeping. A sleeping train has been standing still
+     * for a while and skips all physics updates until it is woken up again.
+     * 
+     * @return True if sleeping, False if awake
+     */
+    public boolean isSleeping() {
+        return this.sleeping;
+    }
+
+    /**
+     * Wakes this train up if it was sleeping, so that physics are performed again
+     * the next tick. This should be called when something happens that could make
+     * a parked train move, such as a collision, a block change or a new action.
+     */
+    public void wakeUp() {
+        this.sleeping = false;
+        this.sleepTicks = 0;
+    }
+
+    /**
+     * Checks whether this train is in a state where it can go to sleep.
+     * It must be standing still on flat rails, and nothing else may be
+     * scheduled that could make it move by itself.
+     * 
+     * @return True if sleeping is allowed
+     */
+    private boolean canSleep() {
+        if (TCConfig.sleepDelay <= 0 || this.isEmpty() || this.isTeleportImmune()) {
+            return false;
+        }
+        if (!isSleepingAction(this.getActions())) {
+            return false;
+        }
+        boolean manualMovement = this.getProperties().isManualMovementAllowed();
+        for (MinecartMember<?> member : this) {
+            if (member.isMoving() || member.isDerailed() || member.isOnSlope() || member.isOnVertical()) {
+                return false;
+            }
+            if (manualMovement && member.getEntity().hasPassenger()) {
+                return false;
+            }
+            if (!member.canSleep() || !isSleepingAction(member.getActions())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSleepingAction(ActionTracker actions) {
+        return !actions.hasAction() || actions.getCurrentAction() instanceof GroupActionWaitForever;
+    }
+
+    /**
+     * Called after physics are performed to keep track of how long the train
+     * has been stationary, and to put it to sleep after the configured delay
+     */
+    private void updateSleeping() {
+        if (!this.canSleep()) {
+            this.sleepTicks = 0;
+        } else if (++this.sleepTicks >= TCConfig.sleepDelay) {
+            this.sleeping = true;
+        }
+    }
+
+    /**
+     * Checks whether a sleeping train was disturbed since it went to sleep.
+     * Members that were given a velocity or died wake up the entire train.
+     * 
+     * @return True if the train is (now) awake, False if it is still sleeping
+     */
+    private boolean checkWakeUp() {
+        if (this.isEmpty()) {
+            this.wakeUp();
+            return true;
+        }
+        for (MinecartMember<?> member : this) {
+            if (member.getEntity().isDead() || member.isMoving()) {
+                this.wakeUp();
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets the maximum amount of ticks a member of this group has lived
      *
@@ -812,6 +1123,10 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
      * When moving 0.4 b/t and under, this value will always be 1.0 (one update). Above it, it will be
      * set to an increasingly small number 1/stepcount. Outside of the physics function, the factor will always be 1.0.<br>
      * <br>
+     * When the train skipped physics because of the physics tick budget (see {@link PhysicsScheduler}), it catches up
+     * by performing the update steps of all skipped ticks in this update. The factor stays the same and is never larger than 1.0.
+     * The last update step of every skipped tick is a final update step, so actions still tick once per tick.<br>
+     * <br>
      * <b>When to use</b><br>
      * This factor should only be used when applying an absolute velocity. For example, when
      * a launcher sign uses a certain desired velocity, this speed factor must be used to make sure it is correctly applied.
@@ -935,21 +1250,40 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
                 m.unloaded = false;
             }
         }
+
+        // Sleeping trains skip physics entirely until something disturbs them
+        if (this.sleeping && !this.checkWakeUp()) {
+            return;
+        }
+
+        // Trains far away from players may skip physics when physics take too long.
+        // Skipped ticks are caught up by performing the update steps of every skipped tick now.
+        int ticks = PhysicsScheduler.getTicks(this);
+        if (ticks == 0) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        long traceSpan = TraceRecorder.isSampling() ? TraceRecorder.begin(TraceRecorder.PHYSICS,
+                null, this, null) : -1L;
+
         try {
             double totalforce = this.getAverageForce();
             double speedlimit = this.getProperties().getSpeedLimit();
-            int update_steps = 1;
+            int tick_steps = 1;
             if (totalforce > 0.4 && speedlimit > 0.4) {
-                update_steps = (int) Math.ceil(speedlimit / 0.4);
+                tick_steps = (int) Math.ceil(speedlimit / 0.4);
             }
-            this.updateSpeedFactor = 1.0 / (double) update_steps;
+            int update_steps = tick_steps * ticks;
+            this.updateSpeedFactor = 1.0 / (double) tick_steps;
 
             if (update_steps > 1) {
-                for (MinecartMember<?> mm : this) {
-                    mm.getEntity().vel.multiply(this.updateSpeedFactor);
+                if (tick_steps > 1) {
+                    for (MinecartMember<?> mm : this) {
+                        mm.getEntity().vel.multiply(this.updateSpeedFactor);
+                    }
                 }
                 for (int i = 0; i < update_steps; i++) {
-                    this.lastUpdateStep = (i == (update_steps - 1));
+                    this.lastUpdateStep = ((i + 1) % tick_steps) == 0;
                     while (!this.doPhysics_step()) ;
                 }
             } else {
@@ -969,6 +1303,9 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
             }
 
             this.updateSpeedFactor = 1.0;
+
+            // Track whether the train is stationary and can be put to sleep
+            this.updateSleeping();
         } catch (GroupUnloadedException ex) {
             //this group is gone
         } catch (Throwable t) {
@@ -976,6 +1313,8 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
             TrainCarts.plugin.log(Level.SEVERE, "Failed to perform physics on train '" + p.getTrainName() + "' at " + p.getLocation() + ":");
             TrainCarts.plugin.handle(t);
         }
+        TraceRecorder.end(traceSpan);
+        PhysicsScheduler.onPhysicsDone(this, System.nanoTime() - startTime);
     }
 
     private double getSpeedAhead() {
@@ -1192,62 +1531,42 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
 
             // Check whether chunks are loaded, and load them if needed
             // If chunks are not kept loaded, the member will unload the entire train
-            previousChunksBuffer.clear();
-            newChunksBuffer.clear();
+            // The chunks around the train are only collected when a member crosses a chunk boundary
+            boolean chunksChanged = this.chunkIndexDirty;
             for (MinecartMember<?> mm : this) {
-                mm.updateChunks(previousChunksBuffer, newChunksBuffer);
+                chunksChanged |= mm.updateChunks();
             }
             int cx, cz;
             IntVector2 chunk;
             final World world = getWorld();
+            if (chunksChanged || world != this.chunkIndexWorld) {
+                chunksChanged = true;
+                this.refreshChunkIndex();
+            }
             Iterator<IntVector2> iter;
             if (this.canUnload()) {
-                // Check whether the new chunks are unloaded
-                iter = newChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    cx = chunk.x;
-                    cz = chunk.z;
-                    if (!world.isChunkLoaded(cx, cz)) {
-                        this.unload();
-                        throw new GroupUnloadedException();
-                    }
-                }
-            } else {
-                // Mark previous chunks for unload
-                iter = previousChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    if (!newChunksBuffer.contains(chunk)) {
-                        cx = chunk.x;
-                        cz = chunk.z;
-                        world.unloadChunkRequest(cx, cz);
-                    }
+                // Chunks are no longer kept loaded by this train
+                if (this.chunkTicketWorld != null) {
+                    this.releaseChunkTickets();
                 }
 
-                // Load all chunks in the train area, regardless of movement
-                // Previously we only loaded chunks after moving across chunk boundaries
-                // This will hopefully fix any issues to do with failing keepChunksLoaded
-                iter = newChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    cx = chunk.x;
-                    cz = chunk.z;
-                    world.getChunkAt(cx, cz);
-                }
-
-                /*
-                // Load the new chunks
-                iter = newChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    if (!previousChunksBuffer.contains(chunk)) {
+                // Check whether the new chunks are unloaded
+                // Chunks unloading around a train that stays put are handled by the chunk unload event
+                if (chunksChanged) {
+                    iter = newChunksBuffer.iterator();
+                    while (iter.hasNext()) {
+                        chunk = iter.next();
                         cx = chunk.x;
                         cz = chunk.z;
-                        world.getChunkAt(cx, cz);
+                        if (!world.isChunkLoaded(cx, cz)) {
+                            this.unload();
+                            throw new GroupUnloadedException();
+                        }
                     }
                 }
-                */
+            } else if (chunksChanged || this.chunkTicketWorld != world) {
+                // Only when crossing chunk boundaries the chunks kept loaded change
+                this.updateChunkTickets(world);
             }
 
             return true;
@@ -1,23 +1,32 @@
 package com.bergerkiller.bukkit.tc.controller;
 
+import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TCMetrics;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.events.GroupCreateEvent;
 import com.bergerkiller.bukkit.tc.events.GroupLinkEvent;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.properties.TrainPropertiesStore;
+import com.bergerkiller.bukkit.tc.utils.ChunkArea;
 import com.bergerkiller.bukkit.tc.utils.TrackWalkIterator;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
     private static final long serialVersionUID = 1;
     protected static HashSet<MinecartGroup> groups = new HashSet<>();
     private static List<MinecartGroup> groupTickBuffer = new ArrayList<>(5);
+    private static final Map<UUID, Map<Long, Set<MinecartGroup>>> chunkIndex = new HashMap<>();
+    private static final Set<Player> steeringPlayers = Collections.newSetFromMap(new ConcurrentHashMap<Player, Boolean>());
 
     /**
      * Called onPhysics for all Minecart Groups who didn't get ticked in the previous run
@@ -26,6 +35,11 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
      * @param disableMinecartTick whether to disable tick updates done by minecarts themselves
      */
     public static void doFixedTick(boolean disableMinecartTick) {
+        // Start measuring the physics time of this tick and decide which trains perform physics
+        TCMetrics.onTick();
+        wakeUpSteeredGroups();
+        PhysicsScheduler.schedule(groups);
+
         groupTickBuffer.clear();
         groupTickBuffer.addAll(groups);
         try {
@@ -44,6 +58,32 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         }
     }
 
+    /**
+     * Notifies that a player sent steering input to the vehicle it is in.
+     * The train the player is in is woken up at the start of the next tick.
+     * This method can be called from any thread.
+     * 
+     * @param player that steered
+     */
+    public static void notifySteering(Player player) {
+        steeringPlayers.add(player);
+    }
+
+    private static void wakeUpSteeredGroups() {
+        if (steeringPlayers.isEmpty()) {
+            return;
+        }
+        Iterator<Player> iter = steeringPlayers.iterator();
+        while (iter.hasNext()) {
+            Player player = iter.next();
+            iter.remove();
+            MinecartMember<?> member = MinecartMemberStore.getFromEntity(player.getVehicle());
+            if (member != null && !member.isUnloaded() && member.getGroup().isSleeping()) {
+                member.getGroup().wakeUp();
+            }
+        }
+    }
+
     /**
      * Executes the Entity doPostTick() on all trains.
      * This ensures minecart entities are moved to the correct chunk they are in.
@@ -62,12 +102,90 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         }
     }
 
+    /**
+     * Gets all the Minecart Groups that have a member within {@link ChunkArea#CHUNK_RANGE}
+     * of the chunk specified. Groups are indexed when they are created, restored or spawned,
+     * and the index is updated when members cross chunk boundaries.
+     * 
+     * @param world the chunk is in
+     * @param cx chunk x-coordinate
+     * @param cz chunk z-coordinate
+     * @return unmodifiable collection of groups near the chunk
+     */
+    public static Collection<MinecartGroup> getGroupsNearChunk(World world, int cx, int cz) {
+        Map<Long, Set<MinecartGroup>> worldIndex = chunkIndex.get(world.getUID());
+        if (worldIndex != null) {
+            Set<MinecartGroup> chunkGroups = worldIndex.get(MathUtil.longHashToLong(cx, cz));
+            if (chunkGroups != null) {
+                return Collections.unmodifiableSet(chunkGroups);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    protected static void addToChunkIndex(World world, long chunkKey, MinecartGroup group) {
+        Map<Long, Set<MinecartGroup>> worldIndex = chunkIndex.get(world.getUID());
+        if (worldIndex == null) {
+            worldIndex = new HashMap<>();
+            chunkIndex.put(world.getUID(), worldIndex);
+        }
+        Set<MinecartGroup> chunkGroups = worldIndex.get(chunkKey);
+        if (chunkGroups == null) {
+            chunkGroups = new HashSet<>(2);
+            worldIndex.put(chunkKey, chunkGroups);
+        }
+        chunkGroups.add(group);
+    }
+
+    protected static void removeFromChunkIndex(World world, long chunkKey, MinecartGroup group) {
+        Map<Long, Set<MinecartGroup>> worldIndex = chunkIndex.get(world.getUID());
+        if (worldIndex != null) {
+            Set<MinecartGroup> chunkGroups = worldIndex.get(chunkKey);
+            if (chunkGroups != null && chunkGroups.remove(group) && chunkGroups.isEmpty()) {
+                worldIndex.remove(chunkKey);
+                if (worldIndex.isEmpty()) {
+                    chunkIndex.remove(world.getUID());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts updating a group, and registers it with the chunk index right away so that
+     * it is found by {@link #getGroupsNearChunk(World, int, int)} before it performs physics
+     *
+     * @param group to add
+     */
+    protected static void addGroup(MinecartGroup group) {
+        groups.add(group);
+        group.refreshChunkIndex();
+    }
+
     public static MinecartGroup create() {
         MinecartGroup g = new MinecartGroup();
-        groups.add(g);
+        addGroup(g);
         return g;
     }
 
+    /**
+     * Creates a new group that is not updated yet. Members can be added to it over multiple ticks,
+     * after which the group is started using {@link #activate(MinecartGroup)}.
+     *
+     * @return new inactive group
+     */
+    public static MinecartGroup createInactive() {
+        return new MinecartGroup();
+    }
+
+    /**
+     * Starts updating a group created using {@link #createInactive()}
+     *
+     * @param group to activate
+     */
+    public static void activate(MinecartGroup group) {
+        addGroup(group);
+    }
+
     public static MinecartGroup create(MinecartMember<?>... members) {
         return create(null, members);
     }
@@ -86,7 +204,7 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         }
         g.updateDirection();
         g.getAverageForce();
-        groups.add(g);
+        addGroup(g);
         GroupCreateEvent.call(g);
         return g;
     }
@@ -97,7 +215,7 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         for (int i = 0; i < types.length; i++) {
             g.add(MinecartMemberStore.spawn(at[i], types[i]));
         }
-        groups.add(g);
+        addGroup(g);
         GroupCreateEvent.call(g);
         return g;
     }
@@ -113,7 +231,7 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         for (int i = 0; i < destinations.length; i++) {
             g.add(MinecartMemberStore.spawn(destinations[destinations.length - i - 1], types.get(i)));
         }
-        groups.add(g);
+        addGroup(g);
         GroupCreateEvent.call(g);
         return g;
     }
@@ -139,6 +257,30 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         return rval;
     }
 
+    /**
+     * Finds all the Minecart Groups that match the name with the expression given.
+     * The trains matching the expression are looked up using
+     * {@link TrainPropertiesStore#matchAllCached(String)}, so no train names are matched here.
+     * Trains that are not loaded are skipped.
+     *
+     * @param expression to match to
+     * @return a Collection of MinecartGroup that match
+     */
+    public static Collection<MinecartGroup> matchAllCached(String expression) {
+        Collection<TrainProperties> matches = TrainPropertiesStore.matchAllCached(expression);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MinecartGroup> rval = new ArrayList<>(matches.size());
+        for (TrainProperties prop : matches) {
+            MinecartGroup group = prop.getHolder();
+            if (group != null) {
+                rval.add(group);
+            }
+        }
+        return rval;
+    }
+
     public static Set<MinecartGroup> getGroupsUnsafe() {
         return groups;
     }
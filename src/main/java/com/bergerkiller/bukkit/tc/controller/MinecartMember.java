@@ -85,7 +85,7 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
     private int collisionEnterTimer = 0;
     private CartProperties properties;
     private Map<UUID, AtomicInteger> collisionIgnoreTimes = new HashMap<>();
-    private ChunkArea lastChunks, currentChunks;
+    private ChunkArea currentChunks;
     private Vector speedFactor = new Vector(0.0, 0.0, 0.0);
 
     public static boolean isTrackConnected(MinecartMember<?> m1, MinecartMember<?> m2) {
@@ -110,8 +110,7 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         super.onAttached();
         this.railTrackerMember.onAttached();
         this.soundLoop = new SoundLoop<MinecartMember<?>>(this);
-        this.lastChunks = new ChunkArea(entity.loc.x.chunk(), entity.loc.z.chunk());
-        this.currentChunks = new ChunkArea(lastChunks);
+        this.currentChunks = new ChunkArea(entity.loc.x.chunk(), entity.loc.z.chunk());
         this.updateDirection();
     }
 
@@ -306,11 +305,22 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
                 Math.abs(cz - entity.getChunkZ()) <= ChunkArea.CHUNK_RANGE;
     }
 
-    protected void updateChunks(Set<IntVector2> previousChunks, Set<IntVector2> newChunks) {
-        previousChunks.addAll(Arrays.asList(this.lastChunks.getChunks()));
-        this.lastChunks.update(this.currentChunks);
-        this.currentChunks.update(entity.loc.x.chunk(), entity.loc.z.chunk());
-        newChunks.addAll(Arrays.asList(this.currentChunks.getChunks()));
+    /**
+     * Moves the chunk area around this Minecart to the chunk it is currently in
+     * 
+     * @return True if this Minecart moved into a different chunk, False if not
+     */
+    protected boolean updateChunks() {
+        return this.currentChunks.update(entity.loc.x.chunk(), entity.loc.z.chunk());
+    }
+
+    /**
+     * Adds the chunks around this Minecart to the set specified
+     * 
+     * @param chunks to add the chunks around the current position to
+     */
+    protected void addChunks(Set<IntVector2> chunks) {
+        chunks.addAll(Arrays.asList(this.currentChunks.getChunks()));
     }
 
     public boolean isSingle() {
@@ -869,6 +879,9 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         if (!this.isInteractable()) {
             return false;
         }
+        if (this.group != null) {
+            this.group.wakeUp();
+        }
         CollisionMode mode = this.getGroup().getProperties().getCollisionMode(e);
         if (!mode.execute(this, e)) {
             return false;
@@ -970,9 +983,23 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
 
     @Override
     public void onPropertiesChanged() {
+        if (this.group != null) {
+            this.group.wakeUp();
+        }
         this.getBlockTracker().update();
     }
 
+    /**
+     * Checks whether this Minecart Member allows the train to go to sleep while it stands still.
+     * Minecart types that perform logic while stationary, such as picking up items, should
+     * return False here while that logic is active.
+     *
+     * @return True if sleeping is allowed, False if not
+     */
+    public boolean canSleep() {
+        return true;
+    }
+
     /**
      * Checks whether this Minecart Member is being controlled externally by an action.
      * If this is True, the default physics such as gravity and slowing-down factors are not applied.
@@ -1378,8 +1405,19 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         if (!from.equals(to)) {
             // Execute move events
             CommonUtil.callEvent(new VehicleMoveEvent(vehicle, from, to));
-            for (TrackedSign sign : this.getBlockTracker().getActiveTrackedSigns()) {
-                SignAction.executeAll(new SignActionEvent(sign.signBlock, sign.railsBlock), SignActionType.MEMBER_MOVE);
+            if (this.getBlockTracker().hasSigns()) {
+                // Only signs that handle move events need one, unless third parties listen for sign events
+                boolean hasListeners = SignActionEvent.getHandlerList().getRegisteredListeners().length > 0;
+                for (TrackedSign sign : this.getBlockTracker().getActiveTrackedSigns()) {
+                    if (hasListeners || sign.getMoveAction() != null) {
+                        SignActionEvent event = SignActionEvent.obtain(sign.signBlock, sign.railsBlock);
+                        try {
+                            SignAction.executeAll(event, SignActionType.MEMBER_MOVE);
+                        } finally {
+                            event.release();
+                        }
+                    }
+                }
             }
         }
 
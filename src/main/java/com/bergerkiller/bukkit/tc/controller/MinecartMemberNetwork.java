@@ -9,21 +9,28 @@ import com.bergerkiller.bukkit.common.protocol.PacketType;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.common.utils.PacketUtil;
+import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TCMetrics;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
+import com.bergerkiller.bukkit.tc.attachments.AttachmentPacketBuffer;
+import com.bergerkiller.bukkit.tc.attachments.AttachmentTree;
 import com.bergerkiller.bukkit.tc.attachments.CartAttachment;
 import com.bergerkiller.bukkit.tc.attachments.CartAttachmentOwner;
 import com.bergerkiller.bukkit.tc.attachments.SeatAttachment;
 import com.bergerkiller.bukkit.tc.attachments.TestAttachment;
 import com.bergerkiller.generated.net.minecraft.server.PacketPlayOutMountHandle;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -33,18 +40,27 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
     public static final int ABSOLUTE_UPDATE_INTERVAL = 200;
     public static final double VELOCITY_SOUND_RADIUS = 16;
     public static final double VELOCITY_SOUND_RADIUS_SQUARED = VELOCITY_SOUND_RADIUS * VELOCITY_SOUND_RADIUS;
+    public static final int ATTACHMENT_VIEWERS_UPDATE_INTERVAL = 5;
     private static final Vector ZERO_VELOCITY = new Vector(0.0, 0.0, 0.0);
+    private static final Location listenerLocation = new Location(null, 0.0, 0.0, 0.0);
     private MinecartMember<?> member = null;
     private final Set<Player> velocityUpdateReceivers = new HashSet<>();
+    private final List<Player> soundListeners = new ArrayList<>();
     public boolean disableMountHandling = false;
     private boolean isFirstUpdate = true;
     private double lastDeltaX = 0.0;
     private double lastDeltaY = 0.0;
     private double lastDeltaZ = 0.0;
     private boolean needsPassengerResync = true;
+    private boolean soundCart = true;
+    private int attachmentViewersTicks = 0;
+    private boolean hasCulledAttachments = false;
 
     private List<SeatAttachment> seats = Arrays.asList(new SeatAttachment(this));
     private List<CartAttachment> attachments = new ArrayList<CartAttachment>();
+    private final AttachmentTree attachmentTree = new AttachmentTree();
+    private final CachedTransform transform = new CachedTransform();
+    private final CachedTransform transformWithMotion = new CachedTransform();
 
     @Override
     public Vector getLastMovement() {
@@ -86,6 +102,13 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
 
         // Debug: add a test attachment
         //this.attachments.add(new TestAttachment(this));
+
+        this.attachmentTree.rebuild(this.attachments);
+        for (CartAttachment attachment : this.attachments) {
+            if (attachment.getViewDistance() != Double.MAX_VALUE) {
+                this.hasCulledAttachments = true;
+            }
+        }
     }
 
     // sends a mount packet with the passengers of this Minecart directly
@@ -108,6 +131,7 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
             }
         }
         PacketUtil.sendPacket(viewer, mount);
+        TCMetrics.NETWORK_PACKETS.inc("mount");
     }
 
     @Override
@@ -191,7 +215,11 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
     }
 
     private void updateVelocity(Player player) {
-        final boolean inRange = isSoundEnabled() && getEntity().loc.distanceSquared(player) <= VELOCITY_SOUND_RADIUS_SQUARED;
+        updateVelocity(player, this.soundCart && isSoundEnabled());
+    }
+
+    private void updateVelocity(Player player, boolean makesSound) {
+        final boolean inRange = makesSound && getEntity().loc.distanceSquared(player) <= VELOCITY_SOUND_RADIUS_SQUARED;
         if (LogicUtil.addOrRemove(velocityUpdateReceivers, player, inRange)) {
             CommonPacket velocityPacket;
             if (inRange) {
@@ -203,6 +231,7 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
             }
             // Send
             PacketUtil.sendPacket(player, velocityPacket);
+            TCMetrics.NETWORK_PACKETS.inc("velocity");
         }
     }
 
@@ -210,6 +239,86 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
         return getVelocityPacket(velocity, 0.0, 0.0);
     }
 
+    /**
+     * Finds the players near enough to a train to hear the rolling sound of any of its carts.
+     * This is done once per tick for the whole train, so that the carts that make sound
+     * only have to check these players, and not all their viewers.
+     *
+     * @param networkControllers of the carts of the train
+     * @param count of carts in the train
+     */
+    private void findSoundListeners(MinecartMemberNetwork[] networkControllers, int count) {
+        this.soundListeners.clear();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            CommonMinecart<?> cart = networkControllers[i].getEntity();
+            minX = Math.min(minX, cart.loc.getX());
+            minY = Math.min(minY, cart.loc.getY());
+            minZ = Math.min(minZ, cart.loc.getZ());
+            maxX = Math.max(maxX, cart.loc.getX());
+            maxY = Math.max(maxY, cart.loc.getY());
+            maxZ = Math.max(maxZ, cart.loc.getZ());
+        }
+        for (Player player : this.getEntity().getWorld().getPlayers()) {
+            player.getLocation(listenerLocation);
+            if (listenerLocation.getX() >= (minX - VELOCITY_SOUND_RADIUS) && listenerLocation.getX() <= (maxX + VELOCITY_SOUND_RADIUS) &&
+                listenerLocation.getY() >= (minY - VELOCITY_SOUND_RADIUS) && listenerLocation.getY() <= (maxY + VELOCITY_SOUND_RADIUS) &&
+                listenerLocation.getZ() >= (minZ - VELOCITY_SOUND_RADIUS) && listenerLocation.getZ() <= (maxZ + VELOCITY_SOUND_RADIUS)) {
+                this.soundListeners.add(player);
+            }
+        }
+    }
+
+    /**
+     * Updates the players that hear the rolling sound of this Minecart.
+     * Velocity is only sent to players near the carts of a train that make sound.
+     *
+     * @param makesSound whether this Minecart makes sound
+     * @param listeners near the train that could hear this Minecart
+     */
+    private void updateSoundReceivers(boolean makesSound, List<Player> listeners) {
+        this.soundCart = makesSound;
+        if (makesSound) {
+            // Stop sending velocity to players that moved out of range
+            Iterator<Player> iter = this.velocityUpdateReceivers.iterator();
+            while (iter.hasNext()) {
+                Player player = iter.next();
+                if (getEntity().loc.distanceSquared(player) > VELOCITY_SOUND_RADIUS_SQUARED) {
+                    iter.remove();
+                    PacketUtil.sendPacket(player, getVelocityPacket(0.0));
+                    TCMetrics.NETWORK_PACKETS.inc("velocity");
+                }
+            }
+
+            // Start sending velocity to viewers near the train that came in range
+            for (Player player : listeners) {
+                if (!this.velocityUpdateReceivers.contains(player) && this.getViewers().contains(player)) {
+                    updateVelocity(player, true);
+                }
+            }
+        } else if (!this.velocityUpdateReceivers.isEmpty()) {
+            CommonPacket velocityPacket = getVelocityPacket(0.0);
+            for (Player player : this.velocityUpdateReceivers) {
+                PacketUtil.sendPacket(player, velocityPacket);
+            }
+            TCMetrics.NETWORK_PACKETS.add("velocity", this.velocityUpdateReceivers.size());
+            this.velocityUpdateReceivers.clear();
+        }
+    }
+
+    /**
+     * Gets whether a cart of a train makes rolling sound.
+     * This is the case for the first and last cart, and for every few carts in between.
+     *
+     * @param index of the cart in the train
+     * @param count of carts in the train
+     * @return True if the cart makes sound
+     */
+    private static boolean isSoundCart(int index, int count) {
+        return index == 0 || index == (count - 1) || TCConfig.soundCartInterval <= 1 || (index % TCConfig.soundCartInterval) == 0;
+    }
+
     @Override
     public void makeVisible(Player viewer) {
         super.makeVisible(viewer);
@@ -221,8 +330,34 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
         this.velocityUpdateReceivers.add(viewer);
         this.updateVelocity(viewer);
 
+        double distanceSquared = getEntity().loc.distanceSquared(viewer);
         for (CartAttachment attachment : this.attachments) {
-            attachment.addViewer(viewer);
+            if (isInViewDistance(attachment, distanceSquared)) {
+                attachment.addViewer(viewer);
+            }
+        }
+    }
+
+    private static boolean isInViewDistance(CartAttachment attachment, double distanceSquared) {
+        double viewDistance = attachment.getViewDistance();
+        return viewDistance == Double.MAX_VALUE || distanceSquared <= (viewDistance * viewDistance);
+    }
+
+    /**
+     * Shows the attachments to viewers that came within their view distance,
+     * and hides them from viewers that moved too far away.
+     * Viewers too far away only see the Minecart itself.
+     */
+    private void updateAttachmentViewers() {
+        for (Player viewer : this.getViewers()) {
+            double distanceSquared = getEntity().loc.distanceSquared(viewer);
+            for (CartAttachment attachment : this.attachments) {
+                if (isInViewDistance(attachment, distanceSquared)) {
+                    attachment.addViewer(viewer);
+                } else {
+                    attachment.removeViewer(viewer);
+                }
+            }
         }
     }
     
@@ -231,6 +366,7 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
         super.makeHidden(viewer, instant);
         this.velocityUpdateReceivers.remove(viewer);
         PacketUtil.sendPacket(viewer, PacketType.OUT_ENTITY_VELOCITY.newInstance(getEntity().getEntityId(), ZERO_VELOCITY));
+        TCMetrics.NETWORK_PACKETS.inc("velocity");
 
         for (CartAttachment attachment : this.attachments) {
             attachment.removeViewer(viewer);
@@ -241,10 +377,16 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
         for (CartAttachment attachment : this.attachments) {
             attachment.onTick();
         }
+        if (this.hasCulledAttachments && ++this.attachmentViewersTicks >= ATTACHMENT_VIEWERS_UPDATE_INTERVAL) {
+            this.attachmentViewersTicks = 0;
+            this.updateAttachmentViewers();
+        }
     }
 
     @Override
     public void onTick() {
+        // Packets of attachments are sent after the carts of the train are synchronized
+        AttachmentPacketBuffer.begin();
         try {
             if (entity.isDead()) {
                 return;
@@ -276,6 +418,7 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
                 if (!(controller instanceof MinecartMemberNetwork)) {
                     // This is not good, but we can fix it...but not here
                     group.networkInvalid.set();
+                    group.wakeUp();
                     return;
                 }
                 networkControllers[i] = (MinecartMemberNetwork) controller;
@@ -285,6 +428,17 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
                 networkControllers[i].tickAttachments();
             }
 
+            // Update the players that hear the train, only for the carts that make sound
+            boolean soundEnabled = group.getProperties().isSoundEnabled();
+            if (soundEnabled) {
+                this.findSoundListeners(networkControllers, count);
+            } else {
+                this.soundListeners.clear();
+            }
+            for (i = 0; i < count; i++) {
+                networkControllers[i].updateSoundReceivers(soundEnabled && isSoundCart(i, count), this.soundListeners);
+            }
+
             // Synchronize to the clients
             if (this.getTicksSinceLocationSync() > ABSOLUTE_UPDATE_INTERVAL) {
                 // Perform absolute updates
@@ -323,6 +477,8 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
         } catch (Throwable t) {
             TrainCarts.plugin.log(Level.SEVERE, "Failed to synchronize a network controller:");
             TrainCarts.plugin.handle(t);
+        } finally {
+            AttachmentPacketBuffer.flush();
         }
     }
 
@@ -336,14 +492,13 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
     }
 
     /**
-     * Gets the position transform of this Minecart
+     * Gets the position transform of this Minecart.
+     * The same instance is returned while the Minecart does not move, and it must not be modified.
      * 
      * @param motion whether motion prediction needs to be taken into account
      * @return transform
      */
     public Matrix4x4 getTransform(boolean motion) {
-        Matrix4x4 transform = new Matrix4x4();
-
         double fx = 0.0, fy = 0.0, fz = 0.0;
         if (motion) {
             fx = this.lastDeltaX * 0.625;
@@ -353,13 +508,12 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
 
         // Some factor of the movement change needs to be re-predicted
         // Otherwise things stuck to this Minecart will always move ahead
-        transform.translateRotate(
+        return (motion ? this.transformWithMotion : this.transform).get(
                 (this.locSynched.getX() - fx),
                 (this.locSynched.getY() - fy),
                 (this.locSynched.getZ() - fz),
                 this.locLive.getYaw(), this.locLive.getPitch()
         );
-        return transform;
     }
 
     public void syncSelf(boolean moved, boolean rotated, boolean absolute) {
@@ -457,13 +611,7 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
             for (Player player : velocityUpdateReceivers) {
                 PacketUtil.sendPacket(player, velocityPacket);
             }
-        }
-
-        // Update the velocity update receivers
-        if (isSoundEnabled()) {
-            for (Player player : getViewers()) {
-                updateVelocity(player);
-            }
+            TCMetrics.NETWORK_PACKETS.add("velocity", velocityUpdateReceivers.size());
         }
 
         // Synchronize meta data
@@ -504,8 +652,37 @@ public class MinecartMemberNetwork extends EntityNetworkController<CommonMinecar
 
     @Override
     public void onSyncAtt(boolean absolute) {
+        this.attachmentTree.update(this.getTransform(true));
         for (CartAttachment attachment : this.attachments) {
             attachment.onSyncAtt(absolute);
         }
     }
+
+    @Override
+    public List<CartAttachment> getChildren() {
+        return Collections.unmodifiableList(this.attachments);
+    }
+
+    /**
+     * Stores the last computed transform, which is used again while the position
+     * and rotation stay the same
+     */
+    private static final class CachedTransform {
+        private double x, y, z;
+        private float yaw, pitch;
+        private Matrix4x4 transform = null;
+
+        public Matrix4x4 get(double x, double y, double z, float yaw, float pitch) {
+            if (this.transform == null || this.x != x || this.y != y || this.z != z || this.yaw != yaw || this.pitch != pitch) {
+                this.x = x;
+                this.y = y;
+                this.z = z;
+                this.yaw = yaw;
+                this.pitch = pitch;
+                this.transform = new Matrix4x4();
+                this.transform.translateRotate(x, y, z, yaw, pitch);
+            }
+            return this.transform;
+        }
+    }
 }
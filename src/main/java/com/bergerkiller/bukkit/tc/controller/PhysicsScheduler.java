@@ -0,0 +1,212 @@
+package com.bergerkiller.bukkit.tc.controller;
+
+import com.bergerkiller.bukkit.common.entity.type.CommonMinecart;
+import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TCMetrics;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits the time spent performing train physics every tick.
+ * Trains near players are always updated every tick. The remaining trains are updated in a
+ * round-robin fashion for as long as the estimated physics time stays within the configured budget.
+ * Trains that are skipped catch up the next time they are updated, by performing the physics of
+ * all the skipped ticks one after the other (see {@link MinecartGroup#getUpdateSpeedFactor()}).
+ * A train is never skipped for longer than the configured maximum amount of ticks.
+ * The scheduler is disabled by default, by setting the budget to 0.
+ */
+public class PhysicsScheduler {
+    private static final int NEAR_PLAYER_CHECK_INTERVAL = 20;
+    private static final double COST_SMOOTHING = 0.2;
+    private static final Map<MinecartGroup, GroupState> states = new IdentityHashMap<>();
+    private static final ArrayDeque<GroupState> remoteQueue = new ArrayDeque<>();
+    private static final List<GroupState> updatedBuffer = new ArrayList<>();
+    private static final List<GroupState> skippedBuffer = new ArrayList<>();
+    private static int currentTick = 0;
+    private static int deferredCount = 0;
+    private static int worstLag = 0;
+    private static long scheduledTime = 0;
+
+    /**
+     * Decides which trains perform physics this tick. Called once every tick before any physics are performed.
+     *
+     * @param groups all trains on the server
+     */
+    static void schedule(Collection<MinecartGroup> groups) {
+        currentTick++;
+        deferredCount = 0;
+        worstLag = 0;
+        scheduledTime = 0;
+
+        // Track new trains and forget trains that no longer exist
+        for (MinecartGroup group : groups) {
+            GroupState state = states.get(group);
+            if (state == null) {
+                state = new GroupState(group);
+                state.nearCheckTick = currentTick + (states.size() % NEAR_PLAYER_CHECK_INTERVAL);
+                states.put(group, state);
+                remoteQueue.add(state);
+            }
+            state.seenTick = currentTick;
+        }
+        Iterator<GroupState> iter = states.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().seenTick != currentTick) {
+                iter.remove();
+            }
+        }
+
+        // Trains near players and sleeping trains are always updated
+        long budget = (long) (TCConfig.physicsTickBudget * 1000000.0);
+        for (GroupState state : states.values()) {
+            if (currentTick >= state.nearCheckTick) {
+                state.nearCheckTick = currentTick + NEAR_PLAYER_CHECK_INTERVAL;
+                state.nearPlayer = isNearPlayer(state.group);
+            }
+            if (state.group.isSleeping()) {
+                state.update = true;
+                state.deferredTicks = 0;
+            } else {
+                state.update = (budget <= 0 || state.nearPlayer);
+            }
+            if (state.update) {
+                scheduledTime += state.cost;
+            }
+        }
+
+        // Update the other trains in turn while time is left
+        int count = remoteQueue.size();
+        for (int i = 0; i < count; i++) {
+            GroupState state = remoteQueue.poll();
+            if (state.seenTick != currentTick) {
+                continue; // removed
+            }
+            if (state.update) {
+                updatedBuffer.add(state);
+            } else if ((scheduledTime + state.cost) <= budget || state.deferredTicks >= TCConfig.physicsMaxDeferTicks) {
+                state.update = true;
+                scheduledTime += state.cost;
+                updatedBuffer.add(state);
+            } else {
+                state.deferredTicks++;
+                deferredCount++;
+                worstLag = Math.max(worstLag, state.deferredTicks);
+                skippedBuffer.add(state);
+            }
+        }
+        remoteQueue.addAll(skippedBuffer);
+        remoteQueue.addAll(updatedBuffer);
+        skippedBuffer.clear();
+        updatedBuffer.clear();
+    }
+
+    /**
+     * Gets the number of ticks of physics a train must perform right now.
+     * This is 0 when the train is skipped this tick, and more than 1 when the
+     * train must catch up ticks it skipped before.
+     *
+     * @param group to get the number of ticks for
+     * @return number of ticks to perform
+     */
+    static int getTicks(MinecartGroup group) {
+        GroupState state = states.get(group);
+        if (state == null) {
+            return 1;
+        } else if (!state.update) {
+            return 0;
+        }
+        state.update = false;
+        int ticks = state.deferredTicks + 1;
+        state.deferredTicks = 0;
+        return ticks;
+    }
+
+    /**
+     * Records the time a train took to perform its physics, used to estimate the time
+     * it will take the next time
+     *
+     * @param group that performed physics
+     * @param nanos the physics took
+     */
+    static void onPhysicsDone(MinecartGroup group, long nanos) {
+        TCMetrics.onPhysics(nanos);
+        GroupState state = states.get(group);
+        if (state != null) {
+            state.cost += (long) ((nanos - state.cost) * COST_SMOOTHING);
+        }
+    }
+
+    /**
+     * Gets the maximum time in nanoseconds spent on physics per tick
+     *
+     * @return budget, 0 if there is no budget
+     */
+    public static long getBudget() {
+        return Math.max(0L, (long) (TCConfig.physicsTickBudget * 1000000.0));
+    }
+
+    /**
+     * Gets the estimated time in nanoseconds of the physics of all trains updated this tick
+     *
+     * @return scheduled physics time
+     */
+    public static long getScheduledTime() {
+        return scheduledTime;
+    }
+
+    /**
+     * Gets the number of trains of which physics were skipped this tick
+     *
+     * @return deferred train count
+     */
+    public static int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Gets the highest number of ticks any train is behind on physics
+     *
+     * @return worst lag in ticks
+     */
+    public static int getWorstLag() {
+        return worstLag;
+    }
+
+    private static boolean isNearPlayer(MinecartGroup group) {
+        if (group.isEmpty()) {
+            return false;
+        }
+        World world = group.getWorld();
+        double distSquared = TCConfig.physicsFullRateDistance * TCConfig.physicsFullRateDistance;
+        CommonMinecart<?> head = group.head().getEntity();
+        CommonMinecart<?> tail = group.tail().getEntity();
+        for (Player player : world.getPlayers()) {
+            if (head.loc.distanceSquared(player) <= distSquared || tail.loc.distanceSquared(player) <= distSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class GroupState {
+        public final MinecartGroup group;
+        public boolean nearPlayer = true;
+        public boolean update = true;
+        public int nearCheckTick = 0;
+        public int seenTick = 0;
+        public int deferredTicks = 0;
+        public long cost = 0;
+
+        public GroupState(MinecartGroup group) {
+            this.group = group;
+        }
+    }
+}
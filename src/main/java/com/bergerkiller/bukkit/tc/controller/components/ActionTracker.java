@@ -6,18 +6,26 @@ import com.bergerkiller.bukkit.tc.actions.MovementAction;
 import com.bergerkiller.bukkit.tc.actions.WaitAction;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
- * Stores actions and updates them per tick
+ * Stores actions and updates them per tick.
+ * Actions are queued in a ring buffer, and the number of queued actions for each member is counted
+ * so members without actions can be skipped when removing actions. Whether the current action
+ * is a movement or wait action is cached when the current action changes.
  */
 public class ActionTracker {
-    private final Queue<Action> actions = new LinkedList<>();
+    private static final int INITIAL_CAPACITY = 4;
+    private Action[] actions = new Action[INITIAL_CAPACITY];
+    private int head = 0;
+    private int size = 0;
+    private final Map<MinecartMember<?>, int[]> memberActionCounts = new IdentityHashMap<>();
+    private MovementAction currentMovementAction = null;
+    private boolean currentWaitAction = false;
 
     public boolean hasAction() {
-        return this.actions.size() > 0;
+        return this.size > 0;
     }
 
     /**
@@ -25,7 +33,13 @@ public class ActionTracker {
      * For groups, this also clears all the actions scheduled for individual members.
      */
     public void clear() {
-        this.actions.clear();
+        for (int i = 0; i < this.size; i++) {
+            this.actions[(this.head + i) % this.actions.length] = null;
+        }
+        this.head = 0;
+        this.size = 0;
+        this.memberActionCounts.clear();
+        this.updateCurrentAction();
     }
 
     /**
@@ -34,13 +48,25 @@ public class ActionTracker {
      * @param forMember to remove the actions for
      */
     public void removeActions(MinecartMember<?> forMember) {
-        Iterator<Action> iter = this.actions.iterator();
-        while (iter.hasNext()) {
-            Action action = iter.next();
-            if (action instanceof MemberAction && ((MemberAction) action).getMember() == forMember) {
-                iter.remove();
+        if (this.memberActionCounts.remove(forMember) == null) {
+            return;
+        }
+
+        // Shift all actions not for this member towards the head
+        int length = this.actions.length;
+        int newSize = 0;
+        for (int i = 0; i < this.size; i++) {
+            Action action = this.actions[(this.head + i) % length];
+            if (!(action instanceof MemberAction && ((MemberAction) action).getMember() == forMember)) {
+                this.actions[(this.head + newSize) % length] = action;
+                newSize++;
             }
         }
+        for (int i = newSize; i < this.size; i++) {
+            this.actions[(this.head + i) % length] = null;
+        }
+        this.size = newSize;
+        this.updateCurrentAction();
     }
 
     /**
@@ -49,7 +75,22 @@ public class ActionTracker {
      * @return action removed, or null if there was none
      */
     public Action removeAction() {
-        return this.actions.remove();
+        if (this.size == 0) {
+            return null;
+        }
+        Action action = this.actions[this.head];
+        this.actions[this.head] = null;
+        this.head = (this.head + 1) % this.actions.length;
+        this.size--;
+        if (action instanceof MemberAction) {
+            MinecartMember<?> member = ((MemberAction) action).getMember();
+            int[] count = this.memberActionCounts.get(member);
+            if (count != null && --count[0] <= 0) {
+                this.memberActionCounts.remove(member);
+            }
+        }
+        this.updateCurrentAction();
+        return action;
     }
 
     /**
@@ -59,7 +100,28 @@ public class ActionTracker {
      * @return the action that was added
      */
     public <T extends Action> T addAction(T action) {
-        this.actions.offer(action);
+        if (this.size == this.actions.length) {
+            Action[] newActions = new Action[this.actions.length * 2];
+            for (int i = 0; i < this.size; i++) {
+                newActions[i] = this.actions[(this.head + i) % this.actions.length];
+            }
+            this.actions = newActions;
+            this.head = 0;
+        }
+        this.actions[(this.head + this.size) % this.actions.length] = action;
+        this.size++;
+        if (action instanceof MemberAction) {
+            MinecartMember<?> member = ((MemberAction) action).getMember();
+            int[] count = this.memberActionCounts.get(member);
+            if (count == null) {
+                count = new int[1];
+                this.memberActionCounts.put(member, count);
+            }
+            count[0]++;
+        }
+        if (this.size == 1) {
+            this.updateCurrentAction();
+        }
         action.bind();
         return action;
     }
@@ -71,22 +133,30 @@ public class ActionTracker {
      * @return True if movement is controlled by an action, False if not
      */
     public boolean isMovementControlled() {
-        final Action a = this.getCurrentAction();
-        return a instanceof MovementAction && ((MovementAction) a).isMovementSuppressed();
+        return this.currentMovementAction != null && this.currentMovementAction.isMovementSuppressed();
     }
 
     public boolean isWaitAction() {
-        return this.getCurrentAction() instanceof WaitAction;
+        return this.currentWaitAction;
     }
 
     public Action getCurrentAction() {
-        return this.actions.peek();
+        return (this.size == 0) ? null : this.actions[this.head];
     }
 
     public void doTick() {
-        while (this.hasAction() && this.actions.peek().doTick()) {
-            this.actions.remove();
+        Action action;
+        while ((action = this.getCurrentAction()) != null && action.doTick()) {
+            // The action may have cleared or changed the queue while it was updated
+            if (this.getCurrentAction() == action) {
+                this.removeAction();
+            }
         }
     }
 
+    private void updateCurrentAction() {
+        Action action = this.getCurrentAction();
+        this.currentMovementAction = (action instanceof MovementAction) ? (MovementAction) action : null;
+        this.currentWaitAction = (action instanceof WaitAction);
+    }
 }
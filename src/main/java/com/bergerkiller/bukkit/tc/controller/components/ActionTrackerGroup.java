@@ -56,6 +56,7 @@ public class ActionTrackerGroup extends ActionTracker {
         } else if (action instanceof MemberAction && ((MemberAction) action).getMember() == null) {
             throw new RuntimeException("Can not add member action without a member set beforehand!");
         }
+        owner.wakeUp();
         return super.addAction(action);
     }
 
@@ -39,6 +39,9 @@ public class ActionTrackerMember extends ActionTracker {
         if (action instanceof MemberAction) {
             ((MemberAction) action).setMember(owner);
         }
+        if (!owner.isUnloaded()) {
+            owner.getGroup().wakeUp();
+        }
         return super.addAction(action);
     }
 
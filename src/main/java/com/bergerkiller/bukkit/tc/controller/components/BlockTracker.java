@@ -2,6 +2,9 @@ package com.bergerkiller.bukkit.tc.controller.components;
 
 import com.bergerkiller.bukkit.common.ToggledState;
 import com.bergerkiller.bukkit.tc.detector.DetectorRegion;
+import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.signactions.SignAction;
+import com.bergerkiller.bukkit.tc.signactions.SignActionType;
 import org.bukkit.block.Block;
 
 import java.util.*;
@@ -126,12 +129,40 @@ public abstract class BlockTracker {
     public class TrackedSign {
         public final Block signBlock;
         public final Block railsBlock;
+        private SignAction moveAction = null;
+        private boolean moveActionResolved = false;
 
         public TrackedSign(Block signBlock, Block railsBlock) {
             this.signBlock = signBlock;
             this.railsBlock = railsBlock;
         }
 
+        /**
+         * Gets the sign action that handles {@link SignActionType#MEMBER_MOVE} events for this sign.
+         * The action is resolved only once while the sign is tracked; a change of the sign
+         * text causes the trackers to refresh, which creates a new tracked sign.
+         * 
+         * @return sign action handling member move events, or null if there is none
+         */
+        public SignAction getMoveAction() {
+            if (!this.moveActionResolved) {
+                this.moveActionResolved = true;
+                SignActionEvent info = SignActionEvent.obtain(this.signBlock, this.railsBlock);
+                try {
+                    if (info.getSign() != null) {
+                        info.setAction(SignActionType.MEMBER_MOVE);
+                        SignAction action = SignAction.getSignAction(info);
+                        if (action != null && action.isActionHandled(SignActionType.MEMBER_MOVE)) {
+                            this.moveAction = action;
+                        }
+                    }
+                } finally {
+                    info.release();
+                }
+            }
+            return this.moveAction;
+        }
+
         @Override
         public int hashCode() {
             return this.signBlock.hashCode();
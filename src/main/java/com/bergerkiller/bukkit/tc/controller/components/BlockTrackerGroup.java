@@ -3,6 +3,7 @@ package com.bergerkiller.bukkit.tc.controller.components;
 import com.bergerkiller.bukkit.common.ToggledState;
 import com.bergerkiller.bukkit.common.bases.IntVector3;
 import com.bergerkiller.bukkit.common.collections.List2D;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
@@ -146,6 +147,16 @@ public class BlockTrackerGroup extends BlockTracker {
             return;
         }
 
+        long traceSpan = TraceRecorder.isSampling() ? TraceRecorder.begin(TraceRecorder.BLOCK_TRACKER,
+                null, owner, null) : -1L;
+        try {
+            refreshTraced();
+        } finally {
+            TraceRecorder.end(traceSpan);
+        }
+    }
+
+    private void refreshTraced() {
         // Do all active rails, signs and detector regions have to be refreshed?
         if (needsPositionUpdate.clear()) {
 
@@ -12,6 +12,25 @@ import com.bergerkiller.bukkit.tc.rails.type.RailType;
 import com.bergerkiller.bukkit.tc.utils.TrackMovingPoint;
 
 public abstract class RailTracker {
+    private static int railsModCount = 0;
+
+    /**
+     * Notifies all rail trackers that rails or signs may have changed, and that the rails
+     * of trains must be looked up again the next time they are refreshed.
+     * This is called when signs switch rails, and on block physics, placement and breaking of rails.
+     */
+    public static void markRailsChanged() {
+        railsModCount++;
+    }
+
+    /**
+     * Gets a counter that changes every time {@link #markRailsChanged()} is called
+     * 
+     * @return rails modification counter
+     */
+    protected static int getRailsModCount() {
+        return railsModCount;
+    }
 
     /**
      * Checks whether the Minecart or Train drives on a particular rail block
@@ -1,12 +1,15 @@
 package com.bergerkiller.bukkit.tc.controller.components;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
 import com.bergerkiller.bukkit.common.bases.IntVector3;
+import com.bergerkiller.bukkit.common.entity.type.CommonMinecart;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.rails.type.RailType;
@@ -16,11 +19,34 @@ import com.bergerkiller.bukkit.tc.utils.TrackMovingPoint;
  * Uses a track iterator to keep track of the rails a train is driving on.
  * This information is then used to update minecart rails information,
  * handle the detection of signs, update minecart movement directions and
- * detect splitting of trains
+ * detect splitting of trains.<br>
+ * <br>
+ * The rails are only walked again when a member moved, changed velocity or was added or removed,
+ * or when rails or signs changed since the previous refresh. Otherwise the rail information of the
+ * previous refresh is applied to the members again.<br>
+ * <br>
+ * The rails of the train are stored as a chain of primitive arrays, ordered from the tail to the head
+ * of the train. Only the members are given {@link TrackedRail} information, and this is re-used when
+ * nothing changed for that member. Tracked rail views of the full chain are only created when
+ * {@link #getRailInformation()} is called.
  */
 public class RailTrackerGroup extends RailTracker {
+    private static final BlockFace[] FACES = BlockFace.values();
     private final MinecartGroup owner;
     private final ArrayList<TrackedRail> rails = new ArrayList<TrackedRail>();
+    private boolean railsValid = true;
+    private World chainWorld = null;
+    private int chainSize = 0;
+    private long[] chainPositions = new long[16];
+    private long[] chainMinecartPositions = new long[16];
+    private RailType[] chainTypes = new RailType[16];
+    private byte[] chainDirections = new byte[16];
+    private int[] chainMembers = new int[16];
+    private boolean[] chainDisconnected = new boolean[16];
+    private MinecartMember<?>[] lastMembers = new MinecartMember<?>[0];
+    private RailType[] lastRailTypes = new RailType[0];
+    private double[] lastMotion = new double[0];
+    private int lastRailsModCount = -1;
 
     public RailTrackerGroup(MinecartGroup owner) {
         this.owner = owner;
@@ -33,6 +59,16 @@ public class RailTrackerGroup extends RailTracker {
      * @return List of rails block information
      */
     public List<TrackedRail> getRailInformation() {
+        if (!this.railsValid) {
+            this.railsValid = true;
+            this.rails.clear();
+            this.rails.ensureCapacity(this.chainSize);
+            for (int i = this.chainSize - 1; i >= 0; i--) {
+                this.rails.add(new TrackedRail(this.lastMembers[this.chainMembers[i]],
+                        toBlock(this.chainMinecartPositions[i]), toBlock(this.chainPositions[i]),
+                        this.chainTypes[i], this.chainDisconnected[i], FACES[this.chainDirections[i]]));
+            }
+        }
         return this.rails;
     }
 
@@ -52,7 +88,7 @@ public class RailTrackerGroup extends RailTracker {
         if (railsBlock.getWorld() != owner.getWorld()) {
             return null;
         }
-        return getMemberFromRails(new IntVector3(railsBlock));
+        return getMemberFromRails(pack(railsBlock.getX(), railsBlock.getY(), railsBlock.getZ()));
     }
 
     /**
@@ -63,10 +99,14 @@ public class RailTrackerGroup extends RailTracker {
      * @return the Minecart Member, or null if not found
      */
     public MinecartMember<?> getMemberFromRails(IntVector3 railsBlockPosition) {
-        //TODO: Is keeping a hashmap up to date a good idea? This loop works just fine, too.
-        for (TrackedRail info : rails) {
-            if (info.position.equals(railsBlockPosition)) {
-                return info.member;
+        return getMemberFromRails(pack(railsBlockPosition.x, railsBlockPosition.y, railsBlockPosition.z));
+    }
+
+    private MinecartMember<?> getMemberFromRails(long position) {
+        // Searched from the head to the tail, the same order as the rail information
+        for (int i = this.chainSize - 1; i >= 0; i--) {
+            if (this.chainPositions[i] == position) {
+                return this.lastMembers[this.chainMembers[i]];
             }
         }
         return null;
@@ -76,8 +116,71 @@ public class RailTrackerGroup extends RailTracker {
      * Refreshes rail information, recalculating rail positions, directions and disconnect states
      */
     public void refresh() {
-        this.rails.clear();
-        refreshFrom(this.owner.size() - 1, false);
+        if (this.isUnchanged()) {
+            for (MinecartMember<?> member : this.owner) {
+                member.getRailTracker().refreshAgain();
+            }
+            return;
+        }
+
+        this.chainSize = 0;
+        this.chainWorld = this.owner.getWorld();
+        this.railsValid = false;
+        if (!this.owner.isEmpty()) {
+            refreshFrom(this.owner.size() - 1, false);
+        }
+        this.storeState();
+    }
+
+    /**
+     * Checks whether the members, their positions and velocities, and the rails are all
+     * the same as during the previous refresh
+     *
+     * @return True if unchanged
+     */
+    private boolean isUnchanged() {
+        int size = this.owner.size();
+        if (size != this.lastMembers.length || this.lastRailsModCount != getRailsModCount()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            MinecartMember<?> member = this.owner.get(i);
+            if (member != this.lastMembers[i] || member.getRailTracker().getLastRailType() != this.lastRailTypes[i]) {
+                return false;
+            }
+            CommonMinecart<?> entity = member.getEntity();
+            int m = i * 6;
+            if (entity.loc.getX() != this.lastMotion[m] || entity.loc.getY() != this.lastMotion[m + 1] ||
+                entity.loc.getZ() != this.lastMotion[m + 2] || entity.vel.getX() != this.lastMotion[m + 3] ||
+                entity.vel.getY() != this.lastMotion[m + 4] || entity.vel.getZ() != this.lastMotion[m + 5])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void storeState() {
+        int size = this.owner.size();
+        if (this.lastMembers.length != size) {
+            this.lastMembers = new MinecartMember<?>[size];
+            this.lastRailTypes = new RailType[size];
+            this.lastMotion = new double[size * 6];
+        }
+        for (int i = 0; i < size; i++) {
+            MinecartMember<?> member = this.owner.get(i);
+            CommonMinecart<?> entity = member.getEntity();
+            int m = i * 6;
+            this.lastMembers[i] = member;
+            this.lastRailTypes[i] = member.getRailTracker().getLastRailType();
+            this.lastMotion[m] = entity.loc.getX();
+            this.lastMotion[m + 1] = entity.loc.getY();
+            this.lastMotion[m + 2] = entity.loc.getZ();
+            this.lastMotion[m + 3] = entity.vel.getX();
+            this.lastMotion[m + 4] = entity.vel.getY();
+            this.lastMotion[m + 5] = entity.vel.getZ();
+        }
+        this.lastRailsModCount = getRailsModCount();
     }
 
     private final void refreshFrom(int memberIndex, boolean disconnected) {
@@ -92,14 +195,14 @@ public class RailTrackerGroup extends RailTracker {
         if (nextMemberIndex < 0) {
             // No next member! Train stops here.
             tail.getRailTracker().refresh(startInfo);
-            this.rails.add(0, startInfo);
+            addRail(memberIndex, startInfo.minecartBlock, startInfo.block, startInfo.type, startInfo.disconnected, startInfo.direction);
             return;
         }
 
         // If derailed, skip checking the tracks for this minecart
         if (startInfo.type == RailType.NONE) {
             tail.getRailTracker().refresh(startInfo);
-            this.rails.add(0, startInfo);
+            addRail(memberIndex, startInfo.minecartBlock, startInfo.block, startInfo.type, startInfo.disconnected, startInfo.direction);
             refreshFrom(nextMemberIndex, false);
             return;
         }
@@ -113,32 +216,30 @@ public class RailTrackerGroup extends RailTracker {
         int moveLimitCtr = 0;
         int possibleDirIdx = 0;
         BlockFace[] possible = null;
-        TrackedRail moveInfo = startInfo;
+        BlockFace moveDirection = startInfo.direction;
         while (true) {
             if (nextPos == null) {
                 break; // member is not on a rail. Do not look for it.
             }
-            TrackMovingPoint p = new TrackMovingPoint(moveInfo.block, moveInfo.direction);
+            TrackMovingPoint p = new TrackMovingPoint(startInfo.block, moveDirection);
             if (p.hasNext()) {
                 p.next();
                 moveLimitCtr = 0;
                 boolean isFirstBlock = true;
-                TrackedRail currInfo;
                 int nrCachedRails = 0; // rails added without certainty of being correct
                 while (true) {
                     if (p.currentTrack.getX() == nextPos.getX() && p.currentTrack.getY() == nextPos.getY() && p.currentTrack.getZ() == nextPos.getZ()) {
                         // If we found the next member for the first time, also update the starting minecart with the correct info
                         if (!foundNextMember) {
                             foundNextMember = true;
-                            tail.getRailTracker().refresh(moveInfo);
-                            this.rails.add(0, moveInfo);
+                            tail.getRailTracker().refresh(startInfo.minecartBlock, startInfo.block, startInfo.type, startInfo.disconnected, moveDirection);
+                            addRail(memberIndex, startInfo.minecartBlock, startInfo.block, startInfo.type, startInfo.disconnected, moveDirection);
                         }
 
                         // Refresh the next minecart with the information currently iterating at
                         nrCachedRails = 0;
-                        currInfo = new TrackedRail(nextMember, p, false);
-                        nextMember.getRailTracker().refresh(currInfo);
-                        this.rails.add(0, currInfo);
+                        nextMember.getRailTracker().refresh(p.current, p.currentTrack, p.currentRail, false, p.currentDirection);
+                        addRail(nextMemberIndex, p.current, p.currentTrack, p.currentRail, false, p.currentDirection);
 
                         // Continue looking for more minecarts
                         if (--nextMemberIndex < 0) {
@@ -158,17 +259,13 @@ public class RailTrackerGroup extends RailTracker {
                         } else {
                             // Keep track of the Minecart we are trying to find for the in-between blocks
                             // This is important for the block space
-                            currInfo = new TrackedRail(nextMember, p, false);
-                            this.rails.add(0, currInfo);
+                            addRail(nextMemberIndex, p.current, p.currentTrack, p.currentRail, false, p.currentDirection);
                             nrCachedRails++;
                         }
                         p.next();
                     } else {
                         // Remove all cached rails - rails iteration failed
-                        while (nrCachedRails > 0) {
-                            nrCachedRails--;
-                            this.rails.remove(0);
-                        }
+                        this.chainSize -= nrCachedRails;
                         break; // out of track
                     }
                 }
@@ -188,14 +285,16 @@ public class RailTrackerGroup extends RailTracker {
             if (possibleDirIdx >= possible.length) {
                 break; // out of directions to try!
             }
-            moveInfo = moveInfo.changeDirection(possible[possibleDirIdx++]);
+            moveDirection = possible[possibleDirIdx++];
         }
 
         // If we did not find the very next minecart from looking at the tail, we must refresh it
+        // It is put at the tail end of the rails found so far
         if (!foundNextMember) {
             foundNextMember = true;
             tail.getRailTracker().refresh(startInfo);
-            this.rails.add(startInfo);
+            addRail(memberIndex, startInfo.minecartBlock, startInfo.block, startInfo.type, startInfo.disconnected, startInfo.direction);
+            insertTailRail();
         }
 
         // If there are more minecarts remaining in the chain, these could not be found using the iterator
@@ -206,6 +305,66 @@ public class RailTrackerGroup extends RailTracker {
         }
     }
 
+    /**
+     * Adds a rail to the head end of the rail chain
+     */
+    private void addRail(int memberIndex, Block minecartBlock, Block railBlock, RailType type, boolean disconnected, BlockFace direction) {
+        int i = this.chainSize;
+        if (i == this.chainPositions.length) {
+            int capacity = i * 2;
+            this.chainPositions = Arrays.copyOf(this.chainPositions, capacity);
+            this.chainMinecartPositions = Arrays.copyOf(this.chainMinecartPositions, capacity);
+            this.chainTypes = Arrays.copyOf(this.chainTypes, capacity);
+            this.chainDirections = Arrays.copyOf(this.chainDirections, capacity);
+            this.chainMembers = Arrays.copyOf(this.chainMembers, capacity);
+            this.chainDisconnected = Arrays.copyOf(this.chainDisconnected, capacity);
+        }
+        this.chainPositions[i] = (railBlock == null) ? pack(0, 0, 0) : pack(railBlock.getX(), railBlock.getY(), railBlock.getZ());
+        this.chainMinecartPositions[i] = pack(minecartBlock.getX(), minecartBlock.getY(), minecartBlock.getZ());
+        this.chainTypes[i] = type;
+        this.chainDirections[i] = (byte) direction.ordinal();
+        this.chainMembers[i] = memberIndex;
+        this.chainDisconnected[i] = disconnected;
+        this.chainSize++;
+    }
+
+    /**
+     * Moves the rail last added to the head end of the chain to the tail end of the chain
+     */
+    private void insertTailRail() {
+        int last = this.chainSize - 1;
+        long position = this.chainPositions[last];
+        long minecartPosition = this.chainMinecartPositions[last];
+        RailType type = this.chainTypes[last];
+        byte direction = this.chainDirections[last];
+        int member = this.chainMembers[last];
+        boolean disconnected = this.chainDisconnected[last];
+        System.arraycopy(this.chainPositions, 0, this.chainPositions, 1, last);
+        System.arraycopy(this.chainMinecartPositions, 0, this.chainMinecartPositions, 1, last);
+        System.arraycopy(this.chainTypes, 0, this.chainTypes, 1, last);
+        System.arraycopy(this.chainDirections, 0, this.chainDirections, 1, last);
+        System.arraycopy(this.chainMembers, 0, this.chainMembers, 1, last);
+        System.arraycopy(this.chainDisconnected, 0, this.chainDisconnected, 1, last);
+        this.chainPositions[0] = position;
+        this.chainMinecartPositions[0] = minecartPosition;
+        this.chainTypes[0] = type;
+        this.chainDirections[0] = direction;
+        this.chainMembers[0] = member;
+        this.chainDisconnected[0] = disconnected;
+    }
+
+    private Block toBlock(long position) {
+        return this.chainWorld.getBlockAt((int) (position >> 38), (int) (position << 52 >> 52), (int) (position << 26 >> 38));
+    }
+
+    /**
+     * Packs block coordinates into a single long value.
+     * 26 bits are used for the x and z coordinates, and 12 bits for the y-coordinate.
+     */
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (long) (y & 0xFFF);
+    }
+
     private static Block getRailPos(MinecartMember<?> member) {
         Block block = member.getEntity().loc.block().toBlock(member.getEntity().getWorld());
         for (RailType type : RailType.values()) {
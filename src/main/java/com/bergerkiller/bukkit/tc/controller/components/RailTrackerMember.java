@@ -1,7 +1,9 @@
 package com.bergerkiller.bukkit.tc.controller.components;
 
 import com.bergerkiller.bukkit.common.bases.IntVector3;
+import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.rails.RailLogicCache;
 import com.bergerkiller.bukkit.tc.rails.logic.RailLogic;
 import com.bergerkiller.bukkit.tc.rails.logic.RailLogicGround;
 import com.bergerkiller.bukkit.tc.rails.logic.RailLogicVertical;
@@ -15,13 +17,15 @@ import org.bukkit.block.BlockFace;
  */
 public class RailTrackerMember extends RailTracker {
     private final MinecartMember<?> owner;
-    private TrackedRail lastRail, rail;
+    private TrackedRail lastRail, rail, refreshedRail;
     private RailLogic lastRailLogic, railLogic;
     private boolean railLogicSnapshotted = false;
+    private TrackedRail cachedLogicRail = null;
+    private RailLogicCache.CachedLogic cachedLogic = null;
 
     public RailTrackerMember(MinecartMember<?> owner) {
         this.owner = owner;
-        this.lastRail = this.rail = new TrackedRail(owner, null, null, RailType.NONE, false, BlockFace.SELF);
+        this.lastRail = this.rail = this.refreshedRail = new TrackedRail(owner, null, null, RailType.NONE, false, BlockFace.SELF);
         this.lastRailLogic = this.railLogic = RailLogicGround.INSTANCE;
     }
 
@@ -29,7 +33,7 @@ public class RailTrackerMember extends RailTracker {
      * Refreshes the basic information with the information from the owner
      */
     public void onAttached() {
-        this.lastRail = this.rail = TrackedRail.create(this.owner, false);
+        this.lastRail = this.rail = this.refreshedRail = TrackedRail.create(this.owner, false);
         this.lastRailLogic = this.railLogic = null;
         this.railLogicSnapshotted = false;
     }
@@ -118,8 +122,31 @@ public class RailTrackerMember extends RailTracker {
         if (this.railLogicSnapshotted && this.railLogic != null) {
             return this.railLogic;
         } else {
+            return this.findRailLogic();
+        }
+    }
+
+    /**
+     * Looks up the rail logic of the current rail. While the member stays on the same rail
+     * and no blocks near it changed, the logic found the previous time is used again.
+     * Otherwise the rail logic cache is used, if available.<br>
+     * <br>
+     * The rail as it was refreshed is used, and not the vertical rail it may have been
+     * replaced with when taking a snapshot, which produces the same logic.
+     *
+     * @return current rail logic
+     */
+    private RailLogic findRailLogic() {
+        RailLogicCache cache = (TrainCarts.plugin == null) ? null : TrainCarts.plugin.getRailLogicCache();
+        TrackedRail rail = this.refreshedRail;
+        if (cache == null || rail.block == null || !rail.type.isLogicCached()) {
             return this.rail.type.getLogic(this.owner, this.rail.block);
         }
+        if (this.cachedLogicRail != rail || !this.cachedLogic.isValid()) {
+            this.cachedLogic = cache.lookup(this.owner, rail.type, rail.block);
+            this.cachedLogicRail = rail;
+        }
+        return this.cachedLogic.getLogic();
     }
 
     /**
@@ -156,7 +183,7 @@ public class RailTrackerMember extends RailTracker {
      * Creates a snapshot of the Rail Logic for the entire next run
      */
     public void snapshotRailLogic() {
-        this.railLogic = this.rail.type.getLogic(this.owner, this.rail.block);
+        this.railLogic = this.findRailLogic();
         if (this.railLogic instanceof RailLogicVertical) {
             this.rail = new TrackedRail(this.rail.member, this.rail.minecartBlock, this.rail.block, RailType.VERTICAL, this.rail.disconnected, this.rail.direction);
         }
@@ -178,9 +205,41 @@ public class RailTrackerMember extends RailTracker {
 
 
         // Refresh
-        this.rail = newInfo;
+        this.rail = this.refreshedRail = newInfo;
         this.railLogic = null;
         this.railLogicSnapshotted = false;
     }
 
+    /**
+     * Refreshes using new rail information. When the information is the same as during the
+     * previous refresh, the previous tracked rail is used again.
+     */
+    void refresh(Block minecartBlock, Block railBlock, RailType type, boolean disconnected, BlockFace direction) {
+        TrackedRail info = this.refreshedRail;
+        if (info.type != type || info.direction != direction || info.disconnected != disconnected ||
+            !isSameBlock(info.block, railBlock) || !isSameBlock(info.minecartBlock, minecartBlock))
+        {
+            info = new TrackedRail(this.owner, minecartBlock, railBlock, type, disconnected, direction);
+        }
+        this.refresh(info);
+    }
+
+    private static boolean isSameBlock(Block a, Block b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null) {
+            return false;
+        } else {
+            return a.getX() == b.getX() && a.getY() == b.getY() && a.getZ() == b.getZ() && a.getWorld() == b.getWorld();
+        }
+    }
+
+    /**
+     * Refreshes using the same rail information as the previous refresh.
+     * This discards a rail logic snapshot taken since then.
+     */
+    void refreshAgain() {
+        this.refresh(this.refreshedRail);
+    }
+
 }
@@ -64,6 +64,11 @@ public class MinecartMemberChest extends MinecartMember<CommonMinecartChest> {
         return false;
     }
 
+    @Override
+    public boolean canSleep() {
+        return !this.getProperties().canPickup();
+    }
+
     @Override
     public void onPhysicsPostMove() throws MemberMissingException, GroupUnloadedException {
         super.onPhysicsPostMove();
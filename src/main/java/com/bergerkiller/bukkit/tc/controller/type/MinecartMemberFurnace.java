@@ -151,6 +151,11 @@ public class MinecartMemberFurnace extends MinecartMember<CommonMinecartFurnace>
         return false;
     }
 
+    @Override
+    public boolean canSleep() {
+        return !entity.hasFuel();
+    }
+
     @Override
     public void onPhysicsPostMove() throws MemberMissingException, GroupUnloadedException {
         super.onPhysicsPostMove();
@@ -23,6 +23,11 @@ public class MinecartMemberHopper extends MinecartMember<CommonMinecartHopper> {
         }
     }
 
+    @Override
+    public boolean canSleep() {
+        return !entity.isSuckingItems();
+    }
+
     @Override
     public void onPhysicsPostMove() throws MemberMissingException, GroupUnloadedException {
         super.onPhysicsPostMove();
@@ -13,6 +13,11 @@ import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 
 public class MinecartMemberMobSpawner extends MinecartMember<CommonMinecartMobSpawner> {
 
+    @Override
+    public boolean canSleep() {
+        return false; // Spawns mobs at an interval
+    }
+
     @Override
     public void onPhysicsPostMove() throws MemberMissingException, GroupUnloadedException {
         super.onPhysicsPostMove();
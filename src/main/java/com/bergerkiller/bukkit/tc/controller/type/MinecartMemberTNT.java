@@ -40,6 +40,11 @@ public class MinecartMemberTNT extends MinecartMember<CommonMinecartTNT> {
         }
     }
 
+    @Override
+    public boolean canSleep() {
+        return entity.getFuseTicks() < 0;
+    }
+
     @Override
     public void onPhysicsPostMove() throws MemberMissingException, GroupUnloadedException {
         super.onPhysicsPostMove();
@@ -5,6 +5,7 @@ import com.bergerkiller.bukkit.common.collections.BlockMap;
 import com.bergerkiller.bukkit.common.config.DataReader;
 import com.bergerkiller.bukkit.common.config.DataWriter;
 import com.bergerkiller.bukkit.common.utils.StreamUtil;
+import com.bergerkiller.bukkit.tc.TCMetrics;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
@@ -258,6 +259,7 @@ public final class DetectorRegion {
     }
 
     private void onLeave(MinecartMember<?> mm) {
+        TCMetrics.DETECTOR_EVENTS.inc("leave");
         for (DetectorListener listener : getListeners()) {
             listener.onLeave(mm);
         }
@@ -276,6 +278,7 @@ public final class DetectorRegion {
     }
 
     private void onEnter(MinecartMember<?> mm) {
+        TCMetrics.DETECTOR_EVENTS.inc("enter");
         for (DetectorListener listener : getListeners()) {
             listener.onEnter(mm);
         }
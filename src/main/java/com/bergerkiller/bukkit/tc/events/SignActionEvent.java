@@ -6,11 +6,14 @@ import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.MaterialUtil;
 import com.bergerkiller.bukkit.tc.Direction;
 import com.bergerkiller.bukkit.tc.PowerState;
+import com.bergerkiller.bukkit.tc.RedstoneTracker;
 import com.bergerkiller.bukkit.tc.SignActionHeader;
+import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.controller.components.RailTracker;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
 import com.bergerkiller.bukkit.tc.rails.type.RailType;
 import com.bergerkiller.bukkit.tc.signactions.SignActionMode;
@@ -29,19 +32,24 @@ import java.util.*;
 
 public class SignActionEvent extends Event implements Cancellable {
     private static final HandlerList handlers = new HandlerList();
-    private final Block signblock;
-    private final BlockFace facing;
-    private final SignActionHeader header;
-    private final Sign sign;
-    private final BlockFace[] watchedDirections;
+    private static final int WATCHED_UNKNOWN = -1;
+    private static SignActionEvent pooledEvent = null;
+    private Block signblock;
+    private BlockFace facing;
+    private SignActionHeader header;
+    private Sign sign;
+    private int watchedMask;
+    private BlockFace[] watchedDirections;
     private Block railsblock;
     private SignActionType actionType;
-    private BlockFace raildirection = null;
-    private MinecartMember<?> member = null;
-    private MinecartGroup group = null;
-    private boolean memberchecked = false;
-    private boolean cancelled = false;
-    private boolean railschecked = false;
+    private BlockFace raildirection;
+    private MinecartMember<?> member;
+    private MinecartGroup group;
+    private boolean memberchecked;
+    private boolean cancelled;
+    private boolean railschecked;
+    private boolean facingchecked;
+    private boolean poolable = false;
 
     public SignActionEvent(Block signblock, MinecartMember<?> member) {
         this(signblock);
@@ -76,48 +84,138 @@ public class SignActionEvent extends Event implements Cancellable {
     }
 
     public SignActionEvent(final Block signblock, final Sign sign, Block railsblock) {
+        this.init(signblock, sign, railsblock);
+    }
+
+    /**
+     * Resets all the state of this event to represent a new sign.
+     * The header, facing and watched directions are computed when first accessed.
+     * 
+     * @param signblock of the sign
+     * @param sign state, null if not available
+     * @param railsblock above the sign, null to find them when needed
+     */
+    private void init(Block signblock, Sign sign, Block railsblock) {
         this.signblock = signblock;
         this.sign = sign;
         this.railsblock = railsblock;
         this.railschecked = this.railsblock != null;
-        if (this.sign == null) {
-            // No sign available - set default values and abort
-            this.header = SignActionHeader.parse(null);
-            this.facing = null;
-            this.watchedDirections = FaceUtil.AXIS;
-            return;
+        this.header = null;
+        this.facing = null;
+        this.facingchecked = false;
+        this.watchedMask = WATCHED_UNKNOWN;
+        this.watchedDirections = null;
+        this.actionType = SignActionType.NONE;
+        this.raildirection = null;
+        this.member = null;
+        this.group = null;
+        this.memberchecked = false;
+        this.cancelled = false;
+    }
+
+    /**
+     * Obtains a sign action event for short-lived internal use, re-using a shared
+     * instance when one is available. The event must not be referenced after calling
+     * {@link #release()}. While Bukkit listeners are registered for this event a new
+     * instance is returned every time, as listeners may keep a reference to it.
+     * The event is also passed to {@link com.bergerkiller.bukkit.tc.signactions.SignAction#execute(SignActionEvent)},
+     * which must not keep it either, as it is reset and re-used for another sign once released.
+     * Only to be called from the main thread.
+     * 
+     * @param signblock of the sign
+     * @param railsblock above the sign, null to find them when needed
+     * @return sign action event
+     */
+    public static SignActionEvent obtain(Block signblock, Block railsblock) {
+        if (handlers.getRegisteredListeners().length > 0) {
+            return new SignActionEvent(signblock, railsblock);
+        }
+        SignActionEvent event = pooledEvent;
+        if (event == null) {
+            event = new SignActionEvent(signblock, railsblock);
         } else {
-            // Sign available - initialize the sign
-            this.header = SignActionHeader.parseFromEvent(this);
-            this.facing = BlockUtil.getFacing(this.signblock);
-            if (this.header.isLegacyConverted() && this.header.isValid()) {
-                this.setLine(0, this.header.toString());
+            pooledEvent = null;
+            event.init(signblock, signblock == null ? null : BlockUtil.getSign(signblock), railsblock);
+        }
+        event.poolable = true;
+        return event;
+    }
+
+    /**
+     * Hands an event obtained using {@link #obtain(Block, Block)} back so it can be re-used.
+     * Has no effect for events that were not obtained from the pool.
+     */
+    public void release() {
+        if (this.poolable) {
+            this.poolable = false;
+            this.init(null, null, null);
+            pooledEvent = this;
+        }
+    }
+
+    private int getWatchedMask() {
+        if (this.watchedMask == WATCHED_UNKNOWN) {
+            this.computeWatchedDirections();
+        }
+        return this.watchedMask;
+    }
+
+    private static int faceBit(BlockFace face) {
+        return 1 << face.ordinal();
+    }
+
+    /**
+     * Adds a watched direction, keeping the order in which the directions are added
+     * 
+     * @param faces to add to
+     * @param face to add
+     */
+    private void addWatchedDirection(List<BlockFace> faces, BlockFace face) {
+        int bit = faceBit(face);
+        if ((this.watchedMask & bit) == 0) {
+            this.watchedMask |= bit;
+            faces.add(face);
+        }
+    }
+
+    private void computeWatchedDirections() {
+        List<BlockFace> faces = new ArrayList<>(4);
+        this.watchedMask = 0;
+        if (this.sign == null) {
+            for (BlockFace face : FaceUtil.AXIS) {
+                this.addWatchedDirection(faces, face);
             }
+        } else {
+            this.computeSignWatchedDirections(faces);
         }
-        HashSet<BlockFace> watchedFaces = new HashSet<>(4);
+        this.watchedDirections = faces.toArray(new BlockFace[faces.size()]);
+    }
+
+    private void computeSignWatchedDirections(List<BlockFace> watchedFaces) {
+        final BlockFace facing = this.getFacing();
         // Find out what directions are watched by this sign
-        if (!this.header.hasDirections()) {
+        if (!this.getHeader().hasDirections()) {
             // find out using the rails above and sign facing
             if (this.hasRails()) {
                 if (FaceUtil.isVertical(this.getRailDirection())) {
-                    watchedFaces.add(BlockFace.UP);
-                    watchedFaces.add(BlockFace.DOWN);
+                    this.addWatchedDirection(watchedFaces, BlockFace.UP);
+                    this.addWatchedDirection(watchedFaces, BlockFace.DOWN);
                 } else {
-                    if (FaceUtil.isSubCardinal(this.getFacing())) {
+                    if (FaceUtil.isSubCardinal(facing)) {
                         // More advanced corner checks - NE/SE/SW/NW
                         // Use rail directions validated against sign facing to
                         // find out what directions are watched
-                        BlockFace[] faces = FaceUtil.getFaces(this.getFacing());
+                        BlockFace[] faces = FaceUtil.getFaces(facing);
                         for (BlockFace face : faces) {
                             if (this.isConnectedRails(face)) {
-                                watchedFaces.add(face.getOppositeFace());
+                                this.addWatchedDirection(watchedFaces, face.getOppositeFace());
                             }
                         }
                         // Try an inversed version, maybe rails can be found there
-                        if (watchedFaces.isEmpty()) {
+                        if (this.watchedMask == 0) {
                             for (BlockFace face : faces) {
                                 if (this.isConnectedRails(face.getOppositeFace())) {
-                                    watchedFaces.add(face);
+                                    this.addWatchedDirection(watchedFaces, face);
                                 }
                             }
                         }
@@ -125,31 +223,31 @@ public class SignActionEvent extends Event implements Cancellable {
                         // Sloped rails also include UP/DOWN, handling from/to vertical rail movement
                         Rails rails = BlockUtil.getRails(this.getRails());
                         if (rails != null && rails.isOnSlope()) {
-                            watchedFaces.add(BlockFace.UP);
-                            watchedFaces.add(BlockFace.DOWN);
+                            this.addWatchedDirection(watchedFaces, BlockFace.UP);
+                            this.addWatchedDirection(watchedFaces, BlockFace.DOWN);
                         }
 
                         // Simple facing checks - NESW
                         if (this.isConnectedRails(facing)) {
-                            watchedFaces.add(facing.getOppositeFace());
+                            this.addWatchedDirection(watchedFaces, facing.getOppositeFace());
                         } else if (this.isConnectedRails(facing.getOppositeFace())) {
-                            watchedFaces.add(facing);
+                            this.addWatchedDirection(watchedFaces, facing);
                         } else {
-                            watchedFaces.add(FaceUtil.rotate(facing, -2));
-                            watchedFaces.add(FaceUtil.rotate(facing, 2));
+                            this.addWatchedDirection(watchedFaces, FaceUtil.rotate(facing, -2));
+                            this.addWatchedDirection(watchedFaces, FaceUtil.rotate(facing, 2));
                         }
                     }
                 }
             }
         } else {
-            watchedFaces.addAll(Arrays.asList(this.header.getFaces(this.getFacing().getOppositeFace())));
+            for (BlockFace face : this.getHeader().getFaces(facing.getOppositeFace())) {
+                this.addWatchedDirection(watchedFaces, face);
+            }
         }
         // Apply watched faces
-        if (watchedFaces.isEmpty()) {
-            watchedFaces.add(this.getFacing().getOppositeFace());
+        if (this.watchedMask == 0) {
+            this.addWatchedDirection(watchedFaces, facing.getOppositeFace());
         }
-        this.watchedDirections = watchedFaces.toArray(new BlockFace[0]);
-        this.actionType = SignActionType.NONE;
     }
 
     public static HandlerList getHandlerList() {
@@ -177,8 +275,9 @@ public class SignActionEvent extends Event implements Cancellable {
         if (this.hasRails()) {
             return FaceUtil.getFaces(this.getRailDirection())[0];
         }
-        if (this.watchedDirections.length > 0) {
-            return this.watchedDirections[0];
+        BlockFace[] watchedDirections = this.getWatchedDirections();
+        if (watchedDirections.length > 0) {
+            return watchedDirections[0];
         }
         return this.getFacing().getOppositeFace();
     }
@@ -202,6 +301,7 @@ public class SignActionEvent extends Event implements Cancellable {
                 }
             }
             BlockUtil.setRails(this.getRails(), from, to);
+            RailTracker.markRailsChanged();
             if (this.hasMember() && this.member.getDirectionFrom().getOppositeFace() == to) {
                 // Break this cart from the train if needed
                 this.member.getGroup().split(this.member.getIndex());
@@ -285,6 +385,16 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return sign header
      */
     public SignActionHeader getHeader() {
+        if (this.header == null) {
+            if (this.sign == null) {
+                this.header = SignActionHeader.parse(null);
+            } else {
+                this.header = SignActionHeader.parseFromEvent(this);
+                if (this.header.isLegacyConverted() && this.header.isValid()) {
+                    this.setLine(0, this.header.toString());
+                }
+            }
+        }
         return this.header;
     }
 
@@ -317,7 +427,8 @@ public class SignActionEvent extends Event implements Cancellable {
     }
 
     public boolean isPowered(BlockFace from) {
-        return this.header.isAlwaysOn() || this.header.isInverted() != this.getPower(from).hasPower();
+        SignActionHeader header = this.getHeader();
+        return header.isAlwaysOn() || header.isInverted() != this.getPower(from).hasPower();
     }
 
     /**
@@ -339,7 +450,15 @@ public class SignActionEvent extends Event implements Cancellable {
         if (this.actionType == SignActionType.REDSTONE_OFF) {
             return false;
         }
-        return this.header.isAlwaysOn() || this.isPoweredRaw(this.header.isInverted());
+        SignActionHeader header = this.getHeader();
+        if (header.isAlwaysOn()) {
+            return true;
+        }
+        RedstoneTracker tracker = (TrainCarts.plugin == null) ? null : TrainCarts.plugin.getRedstoneTracker();
+        if (tracker == null || this.sign == null) {
+            return this.isPoweredRaw(header.isInverted());
+        }
+        return tracker.isPowered(this.signblock) != header.isInverted();
     }
 
     /**
@@ -417,6 +536,10 @@ public class SignActionEvent extends Event implements Cancellable {
     }
 
     public BlockFace getFacing() {
+        if (!this.facingchecked) {
+            this.facingchecked = true;
+            this.facing = (this.sign == null) ? null : BlockUtil.getFacing(this.signblock);
+        }
         return this.facing;
     }
 
@@ -532,7 +655,7 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return Remotely controlled groups
      */
     public Collection<MinecartGroup> getRCTrainGroups() {
-        return MinecartGroup.matchAll(this.getRCName());
+        return MinecartGroup.matchAllCached(this.getRCName());
     }
 
     /**
@@ -541,7 +664,7 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return Train properties of remotely controlled groups
      */
     public Collection<TrainProperties> getRCTrainProperties() {
-        return TrainProperties.matchAll(this.getRCName());
+        return TrainProperties.matchAllCached(this.getRCName());
     }
 
     /**
@@ -633,6 +756,9 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return Watched directions
      */
     public BlockFace[] getWatchedDirections() {
+        if (this.watchedDirections == null) {
+            this.computeWatchedDirections();
+        }
         return this.watchedDirections;
     }
 
@@ -642,9 +768,10 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return spawn directions
      */
     public BlockFace[] getSpawnDirections() {
-        BlockFace[] spawndirs = new BlockFace[this.watchedDirections.length];
+        BlockFace[] watchedDirections = this.getWatchedDirections();
+        BlockFace[] spawndirs = new BlockFace[watchedDirections.length];
         for (int i = 0; i < spawndirs.length; i++) {
-            spawndirs[i] = this.watchedDirections[i].getOppositeFace();
+            spawndirs[i] = watchedDirections[i].getOppositeFace();
         }
         return spawndirs;
     }
@@ -656,7 +783,7 @@ public class SignActionEvent extends Event implements Cancellable {
      * @return True if watched, False otherwise
      */
     public boolean isWatchedDirection(BlockFace direction) {
-        return LogicUtil.contains(direction, this.watchedDirections);
+        return direction != null && (this.getWatchedMask() & faceBit(direction)) != 0;
     }
 
     /**
@@ -766,9 +893,10 @@ public class SignActionEvent extends Event implements Cancellable {
         String text = "{ block=[" + signblock.getX() + "," + signblock.getY() + "," + signblock.getZ() + "]";
         text += ", action=" + this.actionType;
         text += ", watched=[";
-        for (int i = 0; i < this.watchedDirections.length; i++) {
+        BlockFace[] watchedDirections = this.getWatchedDirections();
+        for (int i = 0; i < watchedDirections.length; i++) {
             if (i > 0) text += ",";
-            text += this.watchedDirections[i].name();
+            text += watchedDirections[i].name();
         }
         text += "]";
         if (this.sign == null) {
@@ -3,6 +3,8 @@ package com.bergerkiller.bukkit.tc.itemanimation;
 import com.bergerkiller.bukkit.common.Task;
 import com.bergerkiller.bukkit.common.utils.ItemUtil;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.tc.TCConfig;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.utils.GroundItemsInventory;
@@ -11,17 +13,36 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.DoubleChest;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Animates items moving between inventories, blocks and entities.
+ * Running animations are indexed by the cell of 2x2x2 blocks their item is in, so items
+ * started near a running animation are merged into it without checking all other animations.
+ * The number of animations running in a single chunk is limited, and no animations are started
+ * where no player is near enough to see them.
+ */
 public class ItemAnimation {
     private static final ArrayList<ItemAnimation> runningAnimations = new ArrayList<>();
+    private static final Map<UUID, Map<Long, List<ItemAnimation>>> cellIndex = new HashMap<>();
+    private static final Map<UUID, Map<Long, int[]>> chunkCounts = new HashMap<>();
+    private static final double MERGE_DISTANCE_SQUARED = 4.0;
+    private static final Location viewerLocation = new Location(null, 0.0, 0.0, 0.0);
     private static Task task;
     private final Object from;
     private final Object to;
     private final VirtualItem item;
+    private final UUID worldUUID;
+    private final long chunkKey;
+    private long cellKey;
     public int ticksToFinish = 10;
     private ItemAnimation(Object from, Object to, org.bukkit.inventory.ItemStack data) {
         this.from = fixObject(from);
@@ -32,6 +53,9 @@ public class ItemAnimation {
             throw new IllegalArgumentException("Locations are on different worlds!");
         }
         this.item = new VirtualItem(f, data);
+        this.worldUUID = f.getWorld().getUID();
+        this.chunkKey = MathUtil.longHashToLong(f.getBlockX() >> 4, f.getBlockZ() >> 4);
+        this.cellKey = getCellKey(f);
     }
 
     public static void start(Object from, Object to, org.bukkit.inventory.ItemStack data) {
@@ -41,23 +65,48 @@ public class ItemAnimation {
         data = data.clone();
         //try to stack the item to a nearby location first
         Location l1 = getLocation(fixObject(from));
-        for (ItemAnimation anim : runningAnimations) {
-            Location l2 = getLocation(fixObject(anim.item));
-            if (l2 != null && l1.getWorld() == l2.getWorld()) {
-                if (l1.distanceSquared(l2) < 4.0) {
-                    org.bukkit.inventory.ItemStack thisdata = anim.item.getItemStack();
-                    if (thisdata.getAmount() == 0) {
-                        continue;
-                    }
-                    ItemUtil.transfer(data, thisdata, Integer.MAX_VALUE);
-                    if (data.getAmount() == 0) {
-                        return;
+        Map<Long, List<ItemAnimation>> worldCells = cellIndex.get(l1.getWorld().getUID());
+        if (worldCells != null) {
+            int cx = l1.getBlockX() >> 1;
+            int cy = l1.getBlockY() >> 1;
+            int cz = l1.getBlockZ() >> 1;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        List<ItemAnimation> cell = worldCells.get(getCellKey(cx + dx, cy + dy, cz + dz));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (ItemAnimation anim : cell) {
+                            if (l1.distanceSquared(anim.item.getLocation()) >= MERGE_DISTANCE_SQUARED) {
+                                continue;
+                            }
+                            org.bukkit.inventory.ItemStack thisdata = anim.item.getItemStack();
+                            if (thisdata.getAmount() == 0) {
+                                continue;
+                            }
+                            ItemUtil.transfer(data, thisdata, Integer.MAX_VALUE);
+                            if (data.getAmount() == 0) {
+                                return;
+                            }
+                        }
                     }
                 }
             }
         }
 
-        runningAnimations.add(new ItemAnimation(from, to, data));
+        // Limit the number of animations, and do not animate what nobody can see
+        int[] chunkCount = getChunkCount(l1.getWorld().getUID(), MathUtil.longHashToLong(l1.getBlockX() >> 4, l1.getBlockZ() >> 4), false);
+        if (chunkCount != null && chunkCount[0] >= TCConfig.maxTransferAnimationsPerChunk) {
+            return;
+        }
+        if (!hasViewers(l1)) {
+            return;
+        }
+
+        ItemAnimation animation = new ItemAnimation(from, to, data);
+        runningAnimations.add(animation);
+        animation.addToIndex();
         // Start the updating task if needed
         if (task == null) {
             task = new Task(TrainCarts.plugin) {
@@ -68,6 +117,7 @@ public class ItemAnimation {
                         anim = iter.next();
                         if (anim.update()) {
                             anim.item.die();
+                            anim.removeFromIndex();
                             iter.remove();
                         }
                     }
@@ -85,6 +135,8 @@ public class ItemAnimation {
             anim.item.die();
         }
         runningAnimations.clear();
+        cellIndex.clear();
+        chunkCounts.clear();
         Task.stop(task);
         task = null;
     }
@@ -148,9 +200,102 @@ public class ItemAnimation {
             distancePerTick /= (double) this.ticksToFinish;
             dir.normalize().multiply(distancePerTick);
             this.item.update(dir);
+
+            // Move to a different cell when the item moves far enough
+            long newCellKey = getCellKey(this.item.item.loc.x.block() >> 1, this.item.item.loc.y.block() >> 1, this.item.item.loc.z.block() >> 1);
+            if (newCellKey != this.cellKey) {
+                this.removeFromCell();
+                this.cellKey = newCellKey;
+                this.addToCell();
+            }
         } else {
             return true;
         }
         return false;
     }
+
+    private void addToIndex() {
+        this.addToCell();
+        getChunkCount(this.worldUUID, this.chunkKey, true)[0]++;
+    }
+
+    private void removeFromIndex() {
+        this.removeFromCell();
+        Map<Long, int[]> worldCounts = chunkCounts.get(this.worldUUID);
+        if (worldCounts != null) {
+            int[] count = worldCounts.get(this.chunkKey);
+            if (count != null && --count[0] <= 0) {
+                worldCounts.remove(this.chunkKey);
+                if (worldCounts.isEmpty()) {
+                    chunkCounts.remove(this.worldUUID);
+                }
+            }
+        }
+    }
+
+    private void addToCell() {
+        Map<Long, List<ItemAnimation>> worldCells = cellIndex.get(this.worldUUID);
+        if (worldCells == null) {
+            worldCells = new HashMap<>();
+            cellIndex.put(this.worldUUID, worldCells);
+        }
+        List<ItemAnimation> cell = worldCells.get(this.cellKey);
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            worldCells.put(this.cellKey, cell);
+        }
+        cell.add(this);
+    }
+
+    private void removeFromCell() {
+        Map<Long, List<ItemAnimation>> worldCells = cellIndex.get(this.worldUUID);
+        if (worldCells != null) {
+            List<ItemAnimation> cell = worldCells.get(this.cellKey);
+            if (cell != null && cell.remove(this) && cell.isEmpty()) {
+                worldCells.remove(this.cellKey);
+                if (worldCells.isEmpty()) {
+                    cellIndex.remove(this.worldUUID);
+                }
+            }
+        }
+    }
+
+    private static int[] getChunkCount(UUID worldUUID, long chunkKey, boolean create) {
+        Map<Long, int[]> worldCounts = chunkCounts.get(worldUUID);
+        if (worldCounts == null) {
+            if (!create) {
+                return null;
+            }
+            worldCounts = new HashMap<>();
+            chunkCounts.put(worldUUID, worldCounts);
+        }
+        int[] count = worldCounts.get(chunkKey);
+        if (count == null && create) {
+            count = new int[1];
+            worldCounts.put(chunkKey, count);
+        }
+        return count;
+    }
+
+    private static boolean hasViewers(Location location) {
+        double maxDistSq = TCConfig.transferAnimationViewDistance * TCConfig.transferAnimationViewDistance;
+        for (Player player : location.getWorld().getPlayers()) {
+            player.getLocation(viewerLocation);
+            double dx = viewerLocation.getX() - location.getX();
+            double dy = viewerLocation.getY() - location.getY();
+            double dz = viewerLocation.getZ() - location.getZ();
+            if ((dx * dx + dy * dy + dz * dz) <= maxDistSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getCellKey(Location location) {
+        return getCellKey(location.getBlockX() >> 1, location.getBlockY() >> 1, location.getBlockZ() >> 1);
+    }
+
+    private static long getCellKey(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (long) (cz & 0x1FFFFF);
+    }
 }
@@ -0,0 +1,395 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.common.entity.type.CommonMinecart;
+import com.bergerkiller.bukkit.common.utils.LogicUtil;
+import com.bergerkiller.bukkit.sl.API.Variables;
+import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.Util;
+import com.bergerkiller.bukkit.tc.actions.Action;
+import com.bergerkiller.bukkit.tc.actions.MemberActionLaunch;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.utils.LaunchProfile;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Predicts when trains arrive at their destination.
+ * The remaining distance is the distance of the route from the last path node the train passed
+ * to its destination, minus the distance the train moved since passing that node. The time is estimated
+ * from the current train speed, or the launch profile when the train is being launched. The route distance
+ * is only looked up again when the train passes a path node, changes destination, or when the path nodes change.<br>
+ * <br>
+ * The predicted arrivals are grouped by destination. When SignLink is enabled, the time until the next
+ * arrival and the name of the arriving train are shown using the variables
+ * <i>[destination]ETA</i> and <i>[destination]ETAN</i>. Stations are only sorted and shown again when
+ * the order of the arrivals can change, or when the shown time of the next arrival changes.
+ */
+public class ArrivalPredictor {
+    private static final int UPDATE_INTERVAL = 10;
+    private static final double MIN_SPEED = 0.01;
+    private static final Map<MinecartGroup, Arrival> arrivals = new IdentityHashMap<>();
+    private static final Map<String, List<Arrival>> stations = new HashMap<>();
+    private static final Map<String, String> shownTimes = new HashMap<>();
+    private static final Set<String> changedStations = new HashSet<>();
+    private static Task updateTask = null;
+    private static int currentTick = 0;
+
+    public static void init(JavaPlugin plugin) {
+        updateTask = new Task(plugin) {
+            @Override
+            public void run() {
+                update();
+            }
+        }.start(UPDATE_INTERVAL, UPDATE_INTERVAL);
+    }
+
+    public static void deinit() {
+        Task.stop(updateTask);
+        updateTask = null;
+        arrivals.clear();
+        stations.clear();
+        shownTimes.clear();
+        changedStations.clear();
+    }
+
+    /**
+     * Gets the predicted arrival of a train at its destination.
+     * The distance moved since the last path node is measured by adding up the straight-line
+     * movement of the head of the train between updates, which are half a second apart.
+     * On curves this slightly underestimates the distance moved, so the prediction is slightly late.
+     *
+     * @param group of the train
+     * @return predicted arrival, or null if the train has no known route to a destination
+     */
+    public static Arrival getArrival(MinecartGroup group) {
+        return arrivals.get(group);
+    }
+
+    /**
+     * Gets all the trains heading towards a destination, ordered by predicted arrival.
+     * Trains for which no arrival time can be predicted, for example because they are waiting,
+     * are at the end of the list.
+     *
+     * @param destination name
+     * @return predicted arrivals
+     */
+    public static List<Arrival> getArrivals(String destination) {
+        List<Arrival> station = stations.get(destination);
+        if (station == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(station);
+    }
+
+    /**
+     * Gets the next train to arrive at a destination
+     *
+     * @param destination name
+     * @return next arrival, or null if no trains with a known arrival time are heading there
+     */
+    public static Arrival getNextArrival(String destination) {
+        List<Arrival> station = stations.get(destination);
+        if (station == null || station.isEmpty() || !station.get(0).isKnown()) {
+            return null;
+        }
+        return station.get(0);
+    }
+
+    private static void update() {
+        currentTick += UPDATE_INTERVAL;
+
+        // Update the predictions of all trains that have a destination
+        for (MinecartGroup group : MinecartGroup.getGroupsUnsafe()) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            TrainProperties properties = group.getProperties();
+            String destination = properties.getDestination();
+            if (LogicUtil.nullOrEmpty(destination)) {
+                removeArrival(group);
+                continue;
+            }
+            Arrival arrival = arrivals.get(group);
+            if (arrival == null) {
+                arrival = new Arrival(group);
+                arrivals.put(group, arrival);
+            }
+            arrival.lastSeen = currentTick;
+            if (!destination.equals(arrival.destination)) {
+                setStation(arrival, destination);
+            }
+            if (arrival.update(properties.getLastPathNode())) {
+                // The order of the arrivals can change
+                changedStations.add(arrival.destination);
+            } else if (TCConfig.SignLinkEnabled && arrival.isShownTimeChanged()) {
+                // The next arrival counts down, so its shown time changes every second
+                changedStations.add(arrival.destination);
+            }
+        }
+
+        // Remove trains that no longer exist
+        Iterator<Arrival> iter = arrivals.values().iterator();
+        while (iter.hasNext()) {
+            Arrival arrival = iter.next();
+            if (arrival.lastSeen != currentTick) {
+                iter.remove();
+                setStation(arrival, null);
+            }
+        }
+
+        // Re-sort and show the stations of which arrivals changed
+        for (String destination : changedStations) {
+            List<Arrival> station = stations.get(destination);
+            if (station != null) {
+                Collections.sort(station, ARRIVAL_ORDER);
+            }
+            if (TCConfig.SignLinkEnabled) {
+                showStation(destination, station);
+            }
+        }
+        changedStations.clear();
+    }
+
+    private static void removeArrival(MinecartGroup group) {
+        Arrival arrival = arrivals.remove(group);
+        if (arrival != null) {
+            setStation(arrival, null);
+        }
+    }
+
+    private static void setStation(Arrival arrival, String destination) {
+        if (arrival.destination != null) {
+            List<Arrival> station = stations.get(arrival.destination);
+            if (station != null && station.remove(arrival) && station.isEmpty()) {
+                stations.remove(arrival.destination);
+            }
+            changedStations.add(arrival.destination);
+        }
+        arrival.destination = destination;
+        arrival.routeVersion = -1;
+        if (destination != null) {
+            List<Arrival> station = stations.get(destination);
+            if (station == null) {
+                station = new ArrayList<>(1);
+                stations.put(destination, station);
+            }
+            station.add(arrival);
+            changedStations.add(destination);
+        }
+    }
+
+    private static void showStation(String destination, List<Arrival> station) {
+        String time, name;
+        if (station == null || station.isEmpty() || !station.get(0).isKnown()) {
+            time = "--:--:--";
+            name = "";
+        } else {
+            Arrival next = station.get(0);
+            next.shownSeconds = getShownSeconds(next);
+            time = Util.getTimeString(next.getTicksRemaining() * 50L);
+            name = next.getGroup().getProperties().getDisplayName();
+        }
+        String key = destination + "ETA";
+        if (!time.equals(shownTimes.get(key))) {
+            shownTimes.put(key, time);
+            Variables.get(key).set(time);
+        }
+        key = destination + "ETAN";
+        if (!name.equals(shownTimes.get(key))) {
+            shownTimes.put(key, name);
+            Variables.get(key).set(name);
+        }
+    }
+
+    private static int getShownSeconds(Arrival arrival) {
+        return (arrival.getTicksRemaining() + 19) / 20;
+    }
+
+    private static final Comparator<Arrival> ARRIVAL_ORDER = new Comparator<Arrival>() {
+        @Override
+        public int compare(Arrival a1, Arrival a2) {
+            if (a1.isKnown() != a2.isKnown()) {
+                return a1.isKnown() ? -1 : 1;
+            }
+            return Integer.compare(a1.arrivalTick, a2.arrivalTick);
+        }
+    };
+
+    /**
+     * The predicted arrival of a single train at its destination
+     */
+    public static class Arrival {
+        private final MinecartGroup group;
+        private String destination = null;
+        private String fromNode = null;
+        private boolean fromLocationKnown = false;
+        private double lastX, lastY, lastZ;
+        private double moved = 0.0;
+        private int routeVersion = -1;
+        private int routeDistance = -1;
+        private int arrivalTick = -1;
+        private int shownSeconds = -1;
+        private int lastSeen = 0;
+
+        private Arrival(MinecartGroup group) {
+            this.group = group;
+        }
+
+        /**
+         * Gets the train this arrival is predicted for
+         *
+         * @return train group
+         */
+        public MinecartGroup getGroup() {
+            return this.group;
+        }
+
+        /**
+         * Gets the destination the train is heading towards
+         *
+         * @return destination name
+         */
+        public String getDestination() {
+            return this.destination;
+        }
+
+        /**
+         * Gets whether an arrival time could be predicted. This is not the case when the
+         * train has no route to its destination, or is not moving.
+         *
+         * @return True if the arrival time is known
+         */
+        public boolean isKnown() {
+            return this.arrivalTick >= 0;
+        }
+
+        /**
+         * Gets the predicted number of ticks until the train arrives
+         *
+         * @return remaining ticks, or -1 if not known
+         */
+        public int getTicksRemaining() {
+            return this.isKnown() ? Math.max(0, this.arrivalTick - currentTick) : -1;
+        }
+
+        /**
+         * Gets whether this is the next arrival at its destination, and the time shown
+         * for it is no longer the time remaining
+         *
+         * @return True if the shown time changed
+         */
+        private boolean isShownTimeChanged() {
+            if (!this.isKnown() || getShownSeconds(this) == this.shownSeconds) {
+                return false;
+            }
+            List<Arrival> station = stations.get(this.destination);
+            return station != null && !station.isEmpty() && station.get(0) == this;
+        }
+
+        /**
+         * Updates the predicted arrival
+         *
+         * @param lastNode name of the path node last passed by the train
+         * @return True if the predicted arrival changed by more than a second
+         */
+        private boolean update(String lastNode) {
+            // Start measuring the distance moved when passing a path node
+            boolean nodeChanged = !LogicUtil.bothNullOrEqual(this.fromNode, lastNode);
+            if (nodeChanged) {
+                this.fromNode = lastNode;
+                this.fromLocationKnown = false;
+                this.moved = 0.0;
+            }
+
+            // Look up the route distance again when needed
+            if (nodeChanged || this.routeVersion != PathNode.getVersion()) {
+                this.routeVersion = PathNode.getVersion();
+                PathNode node = LogicUtil.nullOrEmpty(lastNode) ? null : PathNode.get(lastNode);
+                if (node == null) {
+                    this.routeDistance = -1;
+                } else {
+                    if (!this.fromLocationKnown) {
+                        this.fromLocationKnown = true;
+                        this.lastX = node.location.x + 0.5;
+                        this.lastY = node.location.y + 0.5;
+                        this.lastZ = node.location.z + 0.5;
+                    }
+                    if (node.containsName(this.destination)) {
+                        this.routeDistance = 0;
+                    } else {
+                        PathConnection connection = node.findConnection(this.destination);
+                        this.routeDistance = (connection == null) ? -1 : connection.distance;
+                    }
+                }
+            }
+
+            // Add up the movement of the head since the last update
+            if (this.fromLocationKnown) {
+                CommonMinecart<?> head = this.group.head().getEntity();
+                double dx = head.loc.getX() - this.lastX;
+                double dy = head.loc.getY() - this.lastY;
+                double dz = head.loc.getZ() - this.lastZ;
+                this.moved += Math.sqrt(dx * dx + dy * dy + dz * dz);
+                this.lastX = head.loc.getX();
+                this.lastY = head.loc.getY();
+                this.lastZ = head.loc.getZ();
+            }
+
+            int newArrivalTick = -1;
+            if (this.routeDistance >= 0) {
+                int ticks = estimateTicks(Math.max(0.0, this.routeDistance - this.moved));
+                if (ticks >= 0) {
+                    newArrivalTick = currentTick + ticks;
+                }
+            }
+
+            // Only change the prediction when the arrival moved by more than a second
+            boolean changed = (newArrivalTick < 0) != (this.arrivalTick < 0) || Math.abs(newArrivalTick - this.arrivalTick) > 20;
+            if (changed) {
+                this.arrivalTick = newArrivalTick;
+            }
+
+            return changed;
+        }
+
+        private int estimateTicks(double distance) {
+            double speedLimit = this.group.getProperties().getSpeedLimit();
+            int ticks = 0;
+            double speed;
+            Action action = this.group.getActions().getCurrentAction();
+            LaunchProfile profile = (action instanceof MemberActionLaunch) ? ((MemberActionLaunch) action).getProfile() : null;
+            if (profile != null) {
+                // Follow the launch profile while it lasts, then continue at the launch end velocity
+                int remainingTicks = ((MemberActionLaunch) action).getRemainingTicks();
+                int elapsed = profile.getTotalTime() - remainingTicks;
+                double launchStart = profile.getDistance(elapsed);
+                double launchRemaining = profile.getTotalDistance() - launchStart;
+                if (distance <= launchRemaining) {
+                    return profile.getTimeAtDistance(launchStart + distance) - elapsed;
+                }
+                ticks = remainingTicks;
+                distance -= launchRemaining;
+                speed = profile.getEndVelocity();
+            } else {
+                speed = this.group.getAverageForce() / this.group.getUpdateSpeedFactor();
+            }
+            speed = Math.min(speed, speedLimit);
+            if (speed < MIN_SPEED) {
+                return -1;
+            }
+            return ticks + (int) Math.ceil(distance / speed);
+        }
+    }
+}
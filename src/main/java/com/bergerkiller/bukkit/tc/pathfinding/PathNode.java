@@ -19,6 +19,7 @@ import java.util.*;
 
 public class PathNode {
     private static boolean hasChanges = false;
+    private static int version = 0;
     private static BlockMap<PathNode> blockNodes = new BlockMap<>();
     private static Map<String, PathNode> nodes = new HashMap<>();
     public final BlockLocation location;
@@ -35,10 +36,25 @@ public class PathNode {
         }
     }
 
+    /**
+     * Gets a number that changes every time nodes or connections between nodes change.
+     * This can be used to find out when a previously calculated route is no longer valid.
+     *
+     * @return path node version
+     */
+    public static int getVersion() {
+        return version;
+    }
+
+    private static void markChanged() {
+        hasChanges = true;
+        version++;
+    }
+
     public static void clearAll() {
         nodes.clear();
         blockNodes.clear();
-        hasChanges = true;
+        markChanged();
     }
 
     /**
@@ -58,10 +74,14 @@ public class PathNode {
                 continue;
             }
             for (Block signBlock : Util.getSignsFromRails(block)) {
-                info = new SignActionEvent(signBlock);
-                if (info.getSign() != null && info.isType("destination")) {
-                    name = info.getLine(2);
-                    break;
+                info = SignActionEvent.obtain(signBlock, null);
+                try {
+                    if (info.getSign() != null && info.isType("destination")) {
+                        name = info.getLine(2);
+                        break;
+                    }
+                } finally {
+                    info.release();
                 }
             }
             getOrCreate(name, location);
@@ -324,7 +344,7 @@ public class PathNode {
         // Add a new one
         conn = new PathConnection(to, distance, direction);
         this.neighbors.add(conn);
-        hasChanges = true;
+        markChanged();
         return conn;
     }
 
@@ -338,7 +358,7 @@ public class PathNode {
                 }
             }
         }
-        hasChanges = true;
+        markChanged();
     }
 
     /**
@@ -352,7 +372,7 @@ public class PathNode {
             return;
         }
         nodes.remove(name);
-        hasChanges = true;
+        markChanged();
         if (PathProvider.DEBUG_MODE) {
             String dbg = "NODE " + location + " NO LONGER HAS NAME " + name;
             if (this.names.isEmpty()) {
@@ -375,7 +395,7 @@ public class PathNode {
             nodes.remove(name);
         }
         blockNodes.remove(this.location);
-        hasChanges = true;
+        markChanged();
     }
 
     /**
@@ -462,7 +482,7 @@ public class PathNode {
     public void addName(String name) {
         if (this.names.add(name)) {
             nodes.put(name, this);
-            hasChanges = true;
+            markChanged();
         }
     }
 
@@ -471,6 +491,6 @@ public class PathNode {
             nodes.put(name, this);
         }
         blockNodes.put(this.location, this);
-        hasChanges = true;
+        markChanged();
     }
 }
@@ -3,6 +3,7 @@ package com.bergerkiller.bukkit.tc.pathfinding;
 import com.bergerkiller.bukkit.common.BlockLocation;
 import com.bergerkiller.bukkit.common.Task;
 import com.bergerkiller.bukkit.common.utils.FaceUtil;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
@@ -77,6 +78,24 @@ public class PathProvider extends Task {
         return task != null && (!task.pendingOperations.isEmpty() || !task.pendingNodes.isEmpty());
     }
 
+    /**
+     * Gets the number of path finding operations waiting to be performed
+     *
+     * @return pending operation count
+     */
+    public static int getPendingOperationCount() {
+        return (task == null) ? 0 : task.pendingOperations.size();
+    }
+
+    /**
+     * Gets the number of path nodes of which the neighbouring paths still have to be calculated
+     *
+     * @return pending node count
+     */
+    public static int getPendingNodeCount() {
+        return (task == null) ? 0 : task.pendingNodes.size();
+    }
+
     @Override
     public Task stop() {
         addPendingNodes();
@@ -98,6 +117,15 @@ public class PathProvider extends Task {
         if (this.pendingOperations.isEmpty()) {
             return;
         }
+        long traceSpan = TraceRecorder.begin(TraceRecorder.PATH_FINDING);
+        try {
+            runOperations();
+        } finally {
+            TraceRecorder.end(traceSpan);
+        }
+    }
+
+    private void runOperations() {
         int i;
         boolean done;
         final long startTime = System.currentTimeMillis();
@@ -191,29 +219,33 @@ public class PathProvider extends Task {
             String newNodeName;
             boolean hasFinished = false;
             for (Block signblock : Util.getSignsFromRails(nextRail)) {
-                SignActionEvent event = new SignActionEvent(signblock);
-                if (event.getMode() != SignActionMode.NONE) {
-                    if (event.isType("tag", "switcher")) {
-                        newNodeLocation = new BlockLocation(nextRail);
-                        newNodeName = newNodeLocation.toString();
-                    } else if (event.isType("destination")) {
-                        newNodeLocation = new BlockLocation(nextRail);
-                        newNodeName = event.getLine(2);
-                    } else if (event.isType("blocker") && event.isWatchedDirection(iter.currentDirection()) && event.isPowerAlwaysOn()) {
-                        hasFinished = true;
-                        break;
-                    } else {
-                        continue;
-                    }
-                    if (!newNodeName.isEmpty() && !startNode.containsName(newNodeName)) {
-                        //finished, we found our first target - create connection
-                        PathNode to = PathNode.getOrCreate(newNodeName, newNodeLocation);
-                        this.startNode.addNeighbour(to, iter.getDistance() + 1, this.startDir);
-                        hasFinished = true;
-                        if (DEBUG_MODE) {
-                            System.out.println("MADE CONNECTION FROM " + startNode.getDisplayName() + " TO " + newNodeName);
+                SignActionEvent event = SignActionEvent.obtain(signblock, null);
+                try {
+                    if (event.getMode() != SignActionMode.NONE) {
+                        if (event.isType("tag", "switcher")) {
+                            newNodeLocation = new BlockLocation(nextRail);
+                            newNodeName = newNodeLocation.toString();
+                        } else if (event.isType("destination")) {
+                            newNodeLocation = new BlockLocation(nextRail);
+                            newNodeName = event.getLine(2);
+                        } else if (event.isType("blocker") && event.isWatchedDirection(iter.currentDirection()) && event.isPowerAlwaysOn()) {
+                            hasFinished = true;
+                            break;
+                        } else {
+                            continue;
+                        }
+                        if (!newNodeName.isEmpty() && !startNode.containsName(newNodeName)) {
+                            //finished, we found our first target - create connection
+                            PathNode to = PathNode.getOrCreate(newNodeName, newNodeLocation);
+                            this.startNode.addNeighbour(to, iter.getDistance() + 1, this.startDir);
+                            hasFinished = true;
+                            if (DEBUG_MODE) {
+                                System.out.println("MADE CONNECTION FROM " + startNode.getDisplayName() + " TO " + newNodeName);
+                            }
                         }
                     }
+                } finally {
+                    event.release();
                 }
             }
             return hasFinished;
@@ -32,6 +32,8 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
     private final Set<String> owners = new HashSet<>();
     private final Set<String> ownerPermissions = new HashSet<>();
     private final Set<String> tags = new HashSet<>();
+    private final Set<String> ownersView = new IndexedSet(this.owners, ownerIndex);
+    private final Set<String> tagsView = new IndexedSet(this.tags, tagIndex);
     private final Set<Material> blockBreakTypes = new HashSet<>();
     public Vector exitOffset = new Vector(0.0, 0.0, 0.0);
     public float exitYaw = 0.0f, exitPitch = 0.0f;
@@ -174,9 +176,13 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     public void setOwner(String player, boolean owner) {
         if (owner) {
-            this.owners.add(player);
+            if (this.owners.add(player)) {
+                addToIndex(ownerIndex, player, this);
+            }
         } else {
-            this.owners.remove(player);
+            if (this.owners.remove(player)) {
+                removeFromIndex(ownerIndex, player, this);
+            }
         }
     }
 
@@ -213,11 +219,14 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     @Override
     public Set<String> getOwners() {
-        return this.owners;
+        return this.ownersView;
     }
 
     @Override
     public void clearOwners() {
+        for (String owner : this.owners) {
+            removeFromIndex(ownerIndex, owner, this);
+        }
         this.owners.clear();
     }
 
@@ -260,6 +269,9 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     @Override
     public boolean matchTag(String tag) {
+        if (tag.indexOf('*') == -1 && !tag.startsWith("!")) {
+            return !tag.isEmpty() && this.tags.contains(tag);
+        }
         return Util.matchText(this.tags, tag);
     }
 
@@ -270,32 +282,57 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     @Override
     public void clearTags() {
+        for (String tag : this.tags) {
+            removeFromIndex(tagIndex, tag, this);
+        }
         this.tags.clear();
     }
 
     @Override
     public void addTags(String... tags) {
-        Collections.addAll(this.tags, tags);
+        for (String tag : tags) {
+            if (this.tags.add(tag)) {
+                addToIndex(tagIndex, tag, this);
+            }
+        }
     }
 
     @Override
     public void removeTags(String... tags) {
         for (String tag : tags) {
-            this.tags.remove(tag);
+            if (this.tags.remove(tag)) {
+                removeFromIndex(tagIndex, tag, this);
+            }
         }
     }
 
     @Override
     public Set<String> getTags() {
-        return this.tags;
+        return this.tagsView;
     }
 
     @Override
     public void setTags(String... tags) {
-        this.tags.clear();
+        this.clearTags();
         this.addTags(tags);
     }
 
+    /**
+     * Removes this Cart Properties from the tag, owner and destination index.
+     * Called when the properties are removed from the store.
+     */
+    protected void unindex() {
+        for (String tag : this.tags) {
+            removeFromIndex(tagIndex, tag, this);
+        }
+        for (String owner : this.owners) {
+            removeFromIndex(ownerIndex, owner, this);
+        }
+        if (!this.destination.isEmpty()) {
+            removeFromIndex(destinationIndex, this.destination, this);
+        }
+    }
+
     @Override
     public boolean getSpawnItemDrops() {
         return this.spawnItemDrops;
@@ -388,7 +425,7 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
     }
 
     public void clearDestination() {
-        this.destination = "";
+        this.setDestination("");
     }
 
     @Override
@@ -403,7 +440,18 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     @Override
     public void setDestination(String destination) {
-        this.destination = destination == null ? "" : destination;
+        if (destination == null) {
+            destination = "";
+        }
+        if (!this.destination.equals(destination)) {
+            if (!this.destination.isEmpty()) {
+                removeFromIndex(destinationIndex, this.destination, this);
+            }
+            this.destination = destination;
+            if (!destination.isEmpty()) {
+                addToIndex(destinationIndex, destination, this);
+            }
+        }
     }
 
     @Override
@@ -466,10 +514,10 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
             this.setOwner(arg);
         } else if (key.equals("addowner")) {
             arg = arg.toLowerCase();
-            this.getOwners().add(arg);
+            this.setOwner(arg, true);
         } else if (key.equals("remowner")) {
             arg = arg.toLowerCase();
-            this.getOwners().remove(arg);
+            this.setOwner(arg, false);
         } else if (LogicUtil.contains(key, "spawnitemdrops", "spawndrops", "killdrops")) {
             this.setSpawnItemDrops(ParseUtil.parseBool(arg));
         } else {
@@ -484,13 +532,15 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
      * @param from to load from
      */
     public void load(CartProperties from) {
-        this.destination = from.destination;
-        this.owners.clear();
-        this.owners.addAll(from.owners);
+        this.setDestination(from.destination);
+        this.clearOwners();
+        for (String owner : from.owners) {
+            this.setOwner(owner, true);
+        }
         this.ownerPermissions.clear();
         this.ownerPermissions.addAll(from.ownerPermissions);
-        this.tags.clear();
-        this.tags.addAll(from.tags);
+        this.clearTags();
+        this.addTags(from.tags.toArray(new String[0]));
         this.allowPlayerEnter = from.allowPlayerEnter;
         this.allowPlayerExit = from.allowPlayerExit;
         this.invincible = from.invincible;
@@ -503,13 +553,13 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
     @Override
     public void load(ConfigurationNode node) {
         for (String owner : node.getList("owners", String.class)) {
-            this.owners.add(owner.toLowerCase());
+            this.setOwner(owner.toLowerCase(), true);
         }
         this.ownerPermissions.addAll(node.getList("ownerPermissions", String.class));
         for (String tag : node.getList("tags", String.class)) {
-            this.tags.add(tag);
+            this.addTags(tag);
         }
-        this.destination = node.get("destination", this.destination);
+        this.setDestination(node.get("destination", this.destination));
         this.lastPathNode = node.get("lastPathNode", this.lastPathNode);
         this.allowPlayerEnter = node.get("allowPlayerEnter", this.allowPlayerEnter);
         this.allowPlayerExit = node.get("allowPlayerExit", this.allowPlayerExit);
@@ -634,4 +684,70 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
         this.skipOptions.skipCtr = options.skipCtr;
     }
 
+
+    /**
+     * A view of the owners or tags of these properties. Changes made through the view
+     * keep the owner and tag index up to date.
+     */
+    private class IndexedSet extends AbstractSet<String> {
+        private final Set<String> values;
+        private final Map<String, Set<CartProperties>> index;
+
+        public IndexedSet(Set<String> values, Map<String, Set<CartProperties>> index) {
+            this.values = values;
+            this.index = index;
+        }
+
+        @Override
+        public int size() {
+            return this.values.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.values.contains(o);
+        }
+
+        @Override
+        public boolean add(String value) {
+            if (!this.values.add(value)) {
+                return false;
+            }
+            addToIndex(this.index, value, CartProperties.this);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!this.values.remove(o)) {
+                return false;
+            }
+            removeFromIndex(this.index, (String) o, CartProperties.this);
+            return true;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> iter = this.values.iterator();
+            return new Iterator<String>() {
+                private String current = null;
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    return this.current = iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    iter.remove();
+                    removeFromIndex(index, this.current, CartProperties.this);
+                }
+            };
+        }
+    }
 }
@@ -3,8 +3,13 @@ package com.bergerkiller.bukkit.tc.properties;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import org.bukkit.entity.Player;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -13,6 +18,9 @@ import java.util.UUID;
 public class CartPropertiesStore {
     protected static HashMap<String, CartProperties> editing = new HashMap<>();
     private static HashMap<UUID, CartProperties> properties = new HashMap<>();
+    protected static final Map<String, Set<CartProperties>> tagIndex = new HashMap<>();
+    protected static final Map<String, Set<CartProperties>> ownerIndex = new HashMap<>();
+    protected static final Map<String, Set<CartProperties>> destinationIndex = new HashMap<>();
 
     /**
      * Gets the properties of the Minecart the specified player is currently editing
@@ -76,12 +84,86 @@ public class CartPropertiesStore {
             if (tprop.contains(prop)) {
                 tprop.remove(prop);
             }
+            prop.unindex();
         }
     }
 
     protected static void clearAllCarts() {
         properties.clear();
         editing.clear();
+        tagIndex.clear();
+        ownerIndex.clear();
+        destinationIndex.clear();
+    }
+
+    /**
+     * Adds Cart Properties to an index under a key
+     *
+     * @param index to add to
+     * @param key to store it under
+     * @param prop to add
+     */
+    protected static void addToIndex(Map<String, Set<CartProperties>> index, String key, CartProperties prop) {
+        Set<CartProperties> values = index.get(key);
+        if (values == null) {
+            values = new HashSet<>(4);
+            index.put(key, values);
+        }
+        values.add(prop);
+    }
+
+    /**
+     * Removes Cart Properties from an index under a key
+     *
+     * @param index to remove from
+     * @param key it is stored under
+     * @param prop to remove
+     */
+    protected static void removeFromIndex(Map<String, Set<CartProperties>> index, String key, CartProperties prop) {
+        Set<CartProperties> values = index.get(key);
+        if (values != null && values.remove(prop) && values.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static Collection<CartProperties> getIndexed(Map<String, Set<CartProperties>> index, String key) {
+        Set<CartProperties> values = index.get(key);
+        if (values == null) {
+            return Collections.emptySet();
+        } else {
+            return Collections.unmodifiableSet(values);
+        }
+    }
+
+    /**
+     * Gets all the Cart Properties that have the exact tag specified.
+     * No wildcard matching is performed.
+     *
+     * @param tag to look for
+     * @return unmodifiable collection of Cart Properties with this tag
+     */
+    public static Collection<CartProperties> getAllWithTag(String tag) {
+        return getIndexed(tagIndex, tag);
+    }
+
+    /**
+     * Gets all the Cart Properties that are owned by a player
+     *
+     * @param owner name of the player
+     * @return unmodifiable collection of Cart Properties owned by the player
+     */
+    public static Collection<CartProperties> getAllWithOwner(String owner) {
+        return getIndexed(ownerIndex, owner.toLowerCase());
+    }
+
+    /**
+     * Gets all the Cart Properties that have the destination specified
+     *
+     * @param destination to look for
+     * @return unmodifiable collection of Cart Properties with this destination
+     */
+    public static Collection<CartProperties> getAllWithDestination(String destination) {
+        return getIndexed(destinationIndex, destination);
     }
 
     /**
@@ -934,17 +934,17 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
             arg = arg.toLowerCase();
             for (CartProperties cprop : this) {
                 cprop.clearOwners();
-                cprop.getOwners().add(arg);
+                cprop.setOwner(arg, true);
             }
         } else if (key.equals("addowner")) {
             arg = arg.toLowerCase();
             for (CartProperties cprop : this) {
-                cprop.getOwners().add(arg);
+                cprop.setOwner(arg, true);
             }
         } else if (key.equals("remowner")) {
             arg = arg.toLowerCase();
             for (CartProperties cprop : this) {
-                cprop.getOwners().remove(arg);
+                cprop.setOwner(arg, false);
             }
         } else if (LogicUtil.contains(key, "spawnitemdrops", "spawndrops", "killdrops")) {
             this.setSpawnItemDrops(ParseUtil.parseBool(arg));
@@ -22,6 +22,15 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
     private static final String defaultPropertiesFile = "DefaultTrainProperties.yml";
     private static FileConfiguration defconfig = null;
     private static HashMap<String, TrainProperties> trainProperties = new HashMap<>();
+    private static final int MAX_NAME_MATCHERS = 256;
+    private static final Map<String, NameMatcher> nameMatchers = new LinkedHashMap<String, NameMatcher>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NameMatcher> eldest) {
+            return size() > MAX_NAME_MATCHERS;
+        }
+    };
 
     /**
      * Gets all the TrainProperties available
@@ -53,6 +62,77 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         return rval;
     }
 
+    /**
+     * Finds all the Train Properties that match the name with the expression given.
+     * Unlike {@link #matchAll(String)}, the expression is compiled once and the trains matching it
+     * are kept up to date as trains are created, renamed and removed. This should be used for
+     * expressions that are matched often, such as the train name on remote control signs.
+     *
+     * @param expression to match to
+     * @return a Collection of TrainProperties that match
+     */
+    public static Collection<TrainProperties> matchAllCached(String expression) {
+        if (expression == null || expression.isEmpty()) {
+            return Collections.emptyList();
+        }
+        NameMatcher matcher = nameMatchers.get(expression);
+        if (matcher == null) {
+            matcher = new NameMatcher(expression);
+            for (TrainProperties prop : trainProperties.values()) {
+                matcher.update(prop);
+            }
+            nameMatchers.put(expression, matcher);
+        }
+        return new ArrayList<>(matcher.matches);
+    }
+
+    /**
+     * Gets all the Train Properties of which one or more carts have the exact tag specified.
+     * This uses the tag index, and does not check all trains.
+     *
+     * @param tag to look for
+     * @return a Collection of TrainProperties with the tag
+     */
+    public static Collection<TrainProperties> getAllWithTag(String tag) {
+        return getTrains(CartPropertiesStore.getAllWithTag(tag));
+    }
+
+    /**
+     * Gets all the Train Properties of which one or more carts are owned by a player.
+     * This uses the owner index, and does not check all trains.
+     *
+     * @param owner name of the player
+     * @return a Collection of TrainProperties owned by the player
+     */
+    public static Collection<TrainProperties> getAllWithOwner(String owner) {
+        return getTrains(CartPropertiesStore.getAllWithOwner(owner));
+    }
+
+    /**
+     * Gets all the Train Properties of which one or more carts have the destination specified.
+     * This uses the destination index, and does not check all trains.
+     *
+     * @param destination to look for
+     * @return a Collection of TrainProperties with the destination
+     */
+    public static Collection<TrainProperties> getAllWithDestination(String destination) {
+        return getTrains(CartPropertiesStore.getAllWithDestination(destination));
+    }
+
+    private static Collection<TrainProperties> getTrains(Collection<CartProperties> carts) {
+        if (carts.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<TrainProperties> rval = new LinkedHashSet<>(carts.size());
+        for (CartProperties cprop : carts) {
+            TrainProperties prop = cprop.getTrainProperties();
+            if (prop != null && trainProperties.get(prop.getTrainName()) == prop) {
+                rval.add(prop);
+            }
+        }
+        return rval;
+    }
+
     /**
      * Renames a TrainProperties instance
      *
@@ -63,10 +143,10 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         // Rename the offline group
         OfflineGroupManager.rename(properties.getTrainName(), newTrainName);
         // Rename the properties
-        trainProperties.remove(properties.getTrainName());
+        removeProperties(properties.getTrainName());
         properties.setDisplayName(newTrainName);
         properties.trainname = newTrainName;
-        trainProperties.put(newTrainName, properties);
+        putProperties(properties);
         hasChanges = true;
     }
 
@@ -76,7 +156,7 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
      * @param trainName of the properties to remove
      */
     public static void remove(String trainName) {
-        TrainProperties prop = trainProperties.remove(trainName);
+        TrainProperties prop = removeProperties(trainName);
         if (prop != null && !prop.isEmpty()) {
             hasChanges = true;
             Iterator<CartProperties> iter = prop.iterator();
@@ -88,6 +168,26 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         }
     }
 
+    private static void putProperties(TrainProperties prop) {
+        TrainProperties old = trainProperties.put(prop.getTrainName(), prop);
+        for (NameMatcher matcher : nameMatchers.values()) {
+            if (old != null) {
+                matcher.matches.remove(old);
+            }
+            matcher.update(prop);
+        }
+    }
+
+    private static TrainProperties removeProperties(String trainName) {
+        TrainProperties prop = trainProperties.remove(trainName);
+        if (prop != null) {
+            for (NameMatcher matcher : nameMatchers.values()) {
+                matcher.matches.remove(prop);
+            }
+        }
+        return prop;
+    }
+
     /**
      * Gets a TrainProperties instance by name<br>
      * Creates a new instance if none is contained
@@ -101,7 +201,7 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         if (prop == null) {
             prop = new TrainProperties(trainname);
             prop.setDefault();
-            trainProperties.put(trainname, prop);
+            putProperties(prop);
             hasChanges = true;
         }
         return prop;
@@ -156,7 +256,7 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         String name = generateTrainName();
         TrainProperties prop = new TrainProperties(name);
         prop.setDefault();
-        trainProperties.put(name, prop);
+        putProperties(prop);
         hasChanges = true;
         return prop;
     }
@@ -177,6 +277,7 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
      */
     public static void clearAll() {
         trainProperties.clear();
+        nameMatchers.clear();
         CartPropertiesStore.clearAllCarts();
         hasChanges = true;
     }
@@ -194,7 +295,7 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
         for (ConfigurationNode node : config.getNodes()) {
             TrainProperties prop = new TrainProperties(node.getName());
             prop.load(node);
-            trainProperties.put(prop.getTrainName(), prop);
+            putProperties(prop);
         }
         hasChanges = false;
     }
@@ -363,4 +464,28 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
             return specialNodes.iterator().next();
         }
     }
+
+    /**
+     * A compiled train name expression, together with all the trains that currently match it
+     */
+    private static class NameMatcher {
+        public final String[] elements;
+        public final boolean first, last;
+        // Train properties are sets of carts, and their equality changes as carts are added
+        public final Set<TrainProperties> matches = Collections.newSetFromMap(new IdentityHashMap<TrainProperties, Boolean>());
+
+        public NameMatcher(String expression) {
+            this.elements = expression.split("\\*");
+            this.first = expression.startsWith("*");
+            this.last = expression.endsWith("*");
+        }
+
+        public void update(TrainProperties prop) {
+            if (prop.matchName(this.elements, this.first, this.last)) {
+                this.matches.add(prop);
+            } else {
+                this.matches.remove(prop);
+            }
+        }
+    }
 }
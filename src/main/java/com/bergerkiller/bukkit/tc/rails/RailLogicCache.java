@@ -0,0 +1,218 @@
+package com.bergerkiller.bukkit.tc.rails;
+
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.rails.logic.RailLogic;
+import com.bergerkiller.bukkit.tc.rails.type.RailType;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caches the Rail Logic of rail blocks per world and chunk, for the rail types of which the logic
+ * only depends on the blocks (see {@link RailType#isLogicCached()}).
+ * As rail logic can depend on the blocks around the rails, the cached logic of rails near a changed block is discarded.
+ * Block changes far away from any cached rails only cost a look at the rails cached in the same chunks.
+ * Discarded entries are marked invalid, so that holders of an entry know to look it up again.
+ */
+public class RailLogicCache implements Listener {
+    /** Distance in blocks from a changed block within which rail logic must be looked up again */
+    private static final int INVALIDATE_RADIUS = 2;
+    private final Map<UUID, Map<Long, Map<Integer, CachedLogic>>> logic = new HashMap<>();
+
+    /**
+     * Gets the rail logic of a rails block, only asking the rail type when it is not cached
+     *
+     * @param member to get the logic for
+     * @param type of the rails
+     * @param railsBlock the member is driving on
+     * @return rail logic
+     */
+    public RailLogic getLogic(MinecartMember<?> member, RailType type, Block railsBlock) {
+        if (railsBlock == null || !type.isLogicCached()) {
+            return type.getLogic(member, railsBlock);
+        }
+        return lookup(member, type, railsBlock).getLogic();
+    }
+
+    /**
+     * Gets the cache entry storing the rail logic of a rails block. The entry stays valid
+     * until the blocks near the rails change, after which it must be looked up again.
+     * The rail type must be cached, see {@link RailType#isLogicCached()}.
+     *
+     * @param member to get the logic for
+     * @param type of the rails
+     * @param railsBlock the member is driving on
+     * @return cached rail logic entry
+     */
+    public CachedLogic lookup(MinecartMember<?> member, RailType type, Block railsBlock) {
+        Map<Integer, CachedLogic> chunkLogic = getChunkLogic(railsBlock.getWorld(), railsBlock.getX() >> 4, railsBlock.getZ() >> 4);
+        Integer key = Integer.valueOf((railsBlock.getY() << 8) | ((railsBlock.getX() & 0xF) << 4) | (railsBlock.getZ() & 0xF));
+        CachedLogic cached = chunkLogic.get(key);
+        if (cached == null || cached.type != type) {
+            if (cached != null) {
+                cached.valid = false;
+            }
+            cached = new CachedLogic(railsBlock, type, type.getLogic(member, railsBlock));
+            chunkLogic.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Discards the cached rail logic of all rails near a block
+     *
+     * @param block that changed
+     */
+    public void invalidate(Block block) {
+        Map<Long, Map<Integer, CachedLogic>> worldLogic = this.logic.get(block.getWorld().getUID());
+        if (worldLogic == null) {
+            return;
+        }
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        int minCx = (x - INVALIDATE_RADIUS) >> 4;
+        int maxCx = (x + INVALIDATE_RADIUS) >> 4;
+        int minCz = (z - INVALIDATE_RADIUS) >> 4;
+        int maxCz = (z + INVALIDATE_RADIUS) >> 4;
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                Map<Integer, CachedLogic> chunkLogic = worldLogic.get(MathUtil.longHashToLong(cx, cz));
+                if (chunkLogic == null) {
+                    continue;
+                }
+                Iterator<CachedLogic> iter = chunkLogic.values().iterator();
+                while (iter.hasNext()) {
+                    CachedLogic cached = iter.next();
+                    if (Math.abs(cached.x - x) <= INVALIDATE_RADIUS &&
+                        Math.abs(cached.y - y) <= INVALIDATE_RADIUS &&
+                        Math.abs(cached.z - z) <= INVALIDATE_RADIUS)
+                    {
+                        cached.valid = false;
+                        iter.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all cached rail logic
+     */
+    public void clear() {
+        for (Map<Long, Map<Integer, CachedLogic>> worldLogic : this.logic.values()) {
+            for (Map<Integer, CachedLogic> chunkLogic : worldLogic.values()) {
+                invalidateAll(chunkLogic);
+            }
+        }
+        this.logic.clear();
+    }
+
+    private static void invalidateAll(Map<Integer, CachedLogic> chunkLogic) {
+        if (chunkLogic != null) {
+            for (CachedLogic cached : chunkLogic.values()) {
+                cached.valid = false;
+            }
+        }
+    }
+
+    private Map<Integer, CachedLogic> getChunkLogic(World world, int cx, int cz) {
+        Map<Long, Map<Integer, CachedLogic>> worldLogic = this.logic.get(world.getUID());
+        if (worldLogic == null) {
+            worldLogic = new HashMap<>();
+            this.logic.put(world.getUID(), worldLogic);
+        }
+        long chunkKey = MathUtil.longHashToLong(cx, cz);
+        Map<Integer, CachedLogic> chunkLogic = worldLogic.get(chunkKey);
+        if (chunkLogic == null) {
+            chunkLogic = new HashMap<>();
+            worldLogic.put(chunkKey, chunkLogic);
+        }
+        return chunkLogic;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidate(event.getBlockPlaced());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        Map<Long, Map<Integer, CachedLogic>> worldLogic = this.logic.get(chunk.getWorld().getUID());
+        if (worldLogic != null) {
+            invalidateAll(worldLogic.remove(MathUtil.longHashToLong(chunk.getX(), chunk.getZ())));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        Map<Long, Map<Integer, CachedLogic>> worldLogic = this.logic.remove(event.getWorld().getUID());
+        if (worldLogic != null) {
+            for (Map<Integer, CachedLogic> chunkLogic : worldLogic.values()) {
+                invalidateAll(chunkLogic);
+            }
+        }
+    }
+
+    /**
+     * The cached rail logic of a single rails block
+     */
+    public static class CachedLogic {
+        private final int x, y, z;
+        private final RailType type;
+        private final RailLogic logic;
+        private boolean valid = true;
+
+        private CachedLogic(Block railsBlock, RailType type, RailLogic logic) {
+            this.x = railsBlock.getX();
+            this.y = railsBlock.getY();
+            this.z = railsBlock.getZ();
+            this.type = type;
+            this.logic = logic;
+        }
+
+        /**
+         * Gets the cached rail logic
+         *
+         * @return rail logic
+         */
+        public RailLogic getLogic() {
+            return this.logic;
+        }
+
+        /**
+         * Gets whether this entry is still in the cache. When blocks near the rails changed,
+         * the entry is discarded and the rail logic must be looked up again.
+         *
+         * @return True if valid
+         */
+        public boolean isValid() {
+            return this.valid;
+        }
+    }
+}
@@ -277,6 +277,17 @@ public abstract class RailType {
      */
     public abstract RailLogic getLogic(MinecartMember<?> member, Block railsBlock);
 
+    /**
+     * Gets whether the Rail Logic returned by {@link #getLogic(MinecartMember, Block)} only depends on
+     * the rails block and the blocks around it, and not on the Minecart. When this is the case,
+     * the logic is cached per rails block until blocks nearby change.
+     * 
+     * @return True if the rail logic can be cached
+     */
+    public boolean isLogicCached() {
+        return false;
+    }
+
     /**
      * Called one tick after a block of this Rail Type was placed down in the world
      * 
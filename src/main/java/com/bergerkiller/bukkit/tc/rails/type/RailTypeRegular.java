@@ -285,6 +285,11 @@ public class RailTypeRegular extends RailTypeHorizontal {
         return RailLogicHorizontal.get(direction, upsideDown);
     }
 
+    @Override
+    public boolean isLogicCached() {
+        return true;
+    }
+
     @Override
     public RailLogic getLogic(MinecartMember<?> member, Block railsBlock) {
         Rails rails = BlockUtil.getRails(railsBlock);
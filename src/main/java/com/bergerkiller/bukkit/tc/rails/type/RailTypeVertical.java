@@ -131,6 +131,11 @@ public class RailTypeVertical extends RailType {
         }
     }
 
+    @Override
+    public boolean isLogicCached() {
+        return true;
+    }
+
     @Override
     public RailLogic getLogic(MinecartMember<?> member, Block railsBlock) {
         BlockFace dir = Util.getVerticalRailDirection(railsBlock);
@@ -3,6 +3,8 @@ package com.bergerkiller.bukkit.tc.signactions;
 import com.bergerkiller.bukkit.common.utils.BlockUtil;
 import com.bergerkiller.bukkit.common.utils.CommonUtil;
 import com.bergerkiller.bukkit.tc.Permission;
+import com.bergerkiller.bukkit.tc.TCMetrics;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
@@ -24,6 +26,7 @@ import java.util.logging.Level;
 
 public abstract class SignAction {
     private static List<SignAction> actions;
+    private long[] executeCount = null;
 
     public static void init() {
         actions = new ArrayList<>();
@@ -188,7 +191,16 @@ public abstract class SignAction {
         if (info == null || info.getSign() == null) {
             return;
         }
+        long traceSpan = TraceRecorder.isSampling() ? TraceRecorder.begin(TraceRecorder.SIGN_ACTION,
+                info.getAction().name(), info.getGroup(), info.getBlock()) : -1L;
+        try {
+            executeAllTraced(info);
+        } finally {
+            TraceRecorder.end(traceSpan);
+        }
+    }
 
+    private static void executeAllTraced(SignActionEvent info) {
         //Event
         info.setCancelled(false);
         if (CommonUtil.callEvent(info).isCancelled() || actions == null) {
@@ -199,7 +211,11 @@ public abstract class SignAction {
         boolean facing = info.getAction().isMovement() ? info.isFacing() : true;
 
         SignAction action = getSignAction(info);
-        if (action != null && (facing || action.overrideFacing())) {
+        if (action != null && action.isActionHandled(info.getAction()) && (facing || action.overrideFacing())) {
+            if (action.executeCount == null) {
+                action.executeCount = TCMetrics.SIGN_ACTIONS.getValue(action.getClass().getSimpleName());
+            }
+            action.executeCount[0]++;
             try {
                 action.execute(info);
             } catch (Throwable t) {
@@ -242,7 +258,9 @@ public abstract class SignAction {
     public abstract boolean match(SignActionEvent info);
 
     /**
-     * Fired when this sign is being executed for a certain event
+     * Fired when this sign is being executed for a certain event.
+     * The event may be a shared instance that is re-used for other signs after this method returns,
+     * so it must not be kept. Create a new event using the same sign block when it is needed later.
      *
      * @param info event
      */
@@ -280,6 +298,20 @@ public abstract class SignAction {
         return false;
     }
 
+    /**
+     * Gets whether this sign action handles events of a particular type.
+     * Tracked signs whose action does not handle {@link SignActionType#MEMBER_MOVE}
+     * are skipped while carts move over them, without constructing the event at all.
+     * By default all types are handled. As the move event fires every tick a cart moves,
+     * sign actions that do not use it should override this method to ignore it.
+     * 
+     * @param type of sign action event
+     * @return True if events of this type are handled, False if not
+     */
+    public boolean isActionHandled(SignActionType type) {
+        return true;
+    }
+
     /**
      * Whether this sign overrides the internal facing check
      */
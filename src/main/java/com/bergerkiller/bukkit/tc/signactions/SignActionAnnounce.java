@@ -42,6 +42,11 @@ public class SignActionAnnounce extends SignAction {
         return info.isType("announce");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (info.isTrainSign() && info.isAction(SignActionType.GROUP_ENTER, SignActionType.REDSTONE_ON)) {
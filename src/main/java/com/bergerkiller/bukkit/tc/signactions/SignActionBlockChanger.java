@@ -63,6 +63,11 @@ public class SignActionBlockChanger extends SignAction {
         return info.isType("blockchanger", "setblock", "changeblock");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (!info.isPowered()) {
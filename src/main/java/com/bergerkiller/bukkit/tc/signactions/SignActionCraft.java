@@ -25,6 +25,11 @@ public class SignActionCraft extends SignAction {
         return info.isType("craft");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         //parse the sign
@@ -20,6 +20,11 @@ public class SignActionDestination extends SignAction {
         return info.isType("destination");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public boolean click(SignActionEvent info, Player player) {
         //get the train this player is editing
@@ -12,6 +12,11 @@ public class SignActionDestroy extends SignAction {
         return info.isType("destroy");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (!info.isPowered()) return;
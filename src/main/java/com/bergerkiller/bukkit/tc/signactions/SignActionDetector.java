@@ -35,6 +35,11 @@ public class SignActionDetector extends SignAction {
         return info != null && info.getMode() != SignActionMode.NONE && info.isType("detect");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     /**
      * Matches the sign to check that it is indeed a detector sign. If labels are used on either
      * sign, then the labels must match as well. If label is null, but the sign has a label, then
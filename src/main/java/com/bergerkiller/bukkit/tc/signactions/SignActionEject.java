@@ -19,6 +19,11 @@ public class SignActionEject extends SignAction {
         return info.isType("eject");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public boolean click(SignActionEvent info, Player player) {
         MinecartMember<?> member = MinecartMemberStore.getFromEntity(player.getVehicle());
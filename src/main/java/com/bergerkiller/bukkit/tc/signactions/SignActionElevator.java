@@ -76,6 +76,11 @@ public class SignActionElevator extends SignAction {
         return info.isType("elevator");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (info.getMode() == SignActionMode.NONE || !info.hasRailedMember() || !info.isPowered()) {
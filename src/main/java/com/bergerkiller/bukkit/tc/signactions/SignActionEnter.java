@@ -26,6 +26,11 @@ public class SignActionEnter extends SignAction {
         return info.getMode() != SignActionMode.NONE && info.isType("enter");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         // If triggered by redstone, always activate
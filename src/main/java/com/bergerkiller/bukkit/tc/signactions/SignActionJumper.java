@@ -21,6 +21,11 @@ public class SignActionJumper extends SignAction {
         return info.isType("jump") && info.getMode() != SignActionMode.NONE;
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (!info.isPowered() || !info.hasMember()) {
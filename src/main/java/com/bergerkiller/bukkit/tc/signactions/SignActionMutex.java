@@ -18,6 +18,11 @@ public class SignActionMutex extends SignAction {
         return info.isType("mutex");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
     }
@@ -20,6 +20,11 @@ public class SignActionSkip extends SignAction {
         return info.isType("skip");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (!info.isPowered()) return;
@@ -7,15 +7,12 @@ import com.bergerkiller.bukkit.common.utils.FaceUtil;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.ParseUtil;
 import com.bergerkiller.bukkit.common.utils.StringUtil;
-import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.tc.Permission;
 import com.bergerkiller.bukkit.tc.Util;
-import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
-import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
-import com.bergerkiller.bukkit.tc.events.GroupCreateEvent;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.events.SignChangeActionEvent;
+import com.bergerkiller.bukkit.tc.signactions.spawner.SpawnQueue;
 import com.bergerkiller.bukkit.tc.signactions.spawner.SpawnSign;
 import com.bergerkiller.bukkit.tc.utils.TrackIterator;
 import com.bergerkiller.bukkit.tc.utils.TrackWalkIterator;
@@ -333,23 +330,8 @@ public class SignActionSpawn extends SignAction {
                 return; // failed
             }
 
-            // Prepare chunks
-            for (Location loc : spawnLocations) {
-                WorldUtil.loadChunks(loc, 2);
-            }
-
-            //Spawn
-            MinecartGroup group = MinecartGroup.create();
-            for (int i = spawnLocations.size() - 1; i >= 0; i--) {
-                MinecartMember<?> mm = MinecartMemberStore.spawn(spawnLocations.get(i), types.types.get(i));
-                group.add(mm);
-            }
-            group.updateDirection();
-            group.getProperties().setDefault("spawner");
-            if (spawnForce != 0 && launchDirection != BlockFace.SELF) {
-                group.head().getActions().addActionLaunch(launchDirection, 2, spawnForce);
-            }
-            GroupCreateEvent.call(group);
+            // Load the chunks and spawn the carts, spread over multiple ticks for long trains
+            SpawnQueue.schedule(spawnLocations, types.types, launchDirection, spawnForce);
         }
     }
 
@@ -448,6 +430,7 @@ public class SignActionSpawn extends SignAction {
         for (SpawnSign sign : spawnSigns.values()) {
             sign.stop();
         }
+        SpawnQueue.deinit();
     }
 
     public static void save(boolean autosave, String filename) {
@@ -470,6 +453,11 @@ public class SignActionSpawn extends SignAction {
         return isValid(info);
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (info.isAction(SignActionType.REDSTONE_ON) && getSpawnTime(info) == 0) {
@@ -38,6 +38,11 @@ public class SignActionSwitcher extends SignAction {
         return info.isType("switcher", "tag");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         boolean doCart = false;
@@ -21,6 +21,11 @@ public class SignActionTicket extends SignAction {
         return TCConfig.EssentialsEnabled && info.isType("ticket");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         throw new RuntimeException("BROKEN");
@@ -61,6 +61,11 @@ public class SignActionTransfer extends SignAction {
                 || !InteractType.parse(DEPOSIT, info.getLine(1)).isEmpty());
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (!info.isAction(SignActionType.MEMBER_ENTER, SignActionType.REDSTONE_ON, SignActionType.GROUP_ENTER)) {
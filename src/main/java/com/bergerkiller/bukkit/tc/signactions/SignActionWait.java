@@ -19,6 +19,11 @@ public class SignActionWait extends SignAction {
         return info.isType("wait");
     }
 
+    @Override
+    public boolean isActionHandled(SignActionType type) {
+        return type != SignActionType.MEMBER_MOVE;
+    }
+
     @Override
     public void execute(SignActionEvent info) {
         if (info.isAction(SignActionType.GROUP_ENTER) && info.isPowered()) {
@@ -0,0 +1,218 @@
+package com.bergerkiller.bukkit.tc.signactions.spawner;
+
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TrainCarts;
+import com.bergerkiller.bukkit.tc.controller.ChunkKeepAliveManager;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.events.GroupCreateEvent;
+import com.bergerkiller.bukkit.tc.properties.TrainPropertiesStore;
+import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spawns the trains of spawn signs in stages. The chunks around the spawn positions are requested first,
+ * and are loaded a few per tick by the {@link ChunkKeepAliveManager}. Chunks that are still not loaded after
+ * a while are loaded synchronously. The carts are then spawned over as many ticks as needed to stay within the
+ * time budget set in the configuration. The train is only updated once all its carts have spawned.<br>
+ * <br>
+ * While spawning, the chunks are kept loaded using tickets. If the carts spawned so far are removed or unloaded
+ * before the train is complete, spawning is aborted and the remaining carts are removed.
+ */
+public class SpawnQueue {
+    private static final int CHUNK_RADIUS = 2;
+    private static final int MAX_PRELOAD_TICKS = 40;
+    private static final List<PendingSpawn> pending = new ArrayList<>();
+    private static Task task = null;
+
+    /**
+     * Schedules a train to be spawned. If the chunks are loaded and the train is short enough,
+     * the train is spawned right away.
+     *
+     * @param locations to spawn carts at, in order from the front to the back of the train
+     * @param types of the carts to spawn at each location
+     * @param launchDirection to launch the train after spawning, SELF to not launch
+     * @param spawnForce to launch the train with after spawning
+     */
+    public static void schedule(List<Location> locations, List<EntityType> types, BlockFace launchDirection, double spawnForce) {
+        PendingSpawn spawn = new PendingSpawn(locations, types, launchDirection, spawnForce);
+        if (spawn.update(getDeadline())) {
+            return;
+        }
+        pending.add(spawn);
+        if (task == null) {
+            task = new Task(TrainCarts.plugin) {
+                @Override
+                public void run() {
+                    long deadline = getDeadline();
+                    Iterator<PendingSpawn> iter = pending.iterator();
+                    while (iter.hasNext() && System.nanoTime() < deadline) {
+                        if (iter.next().update(deadline)) {
+                            iter.remove();
+                        }
+                    }
+                    if (pending.isEmpty()) {
+                        Task.stop(task);
+                        task = null;
+                    }
+                }
+            }.start(1, 1);
+        }
+    }
+
+    /**
+     * Spawns all the remaining carts of trains that are still being spawned
+     */
+    public static void deinit() {
+        for (PendingSpawn spawn : pending) {
+            spawn.update(Long.MAX_VALUE);
+        }
+        pending.clear();
+        Task.stop(task);
+        task = null;
+    }
+
+    private static long getDeadline() {
+        return System.nanoTime() + (long) (TCConfig.spawnTickBudget * 1000000.0);
+    }
+
+    private static class PendingSpawn {
+        private final List<Location> locations;
+        private final List<EntityType> types;
+        private final BlockFace launchDirection;
+        private final double spawnForce;
+        private final World world;
+        private final Set<Long> chunks = new LinkedHashSet<>();
+        private final List<Long> acquiredChunks = new ArrayList<>();
+        private MinecartGroup group = null;
+        private int nextIndex;
+        private int preloadTicks = 0;
+
+        public PendingSpawn(List<Location> locations, List<EntityType> types, BlockFace launchDirection, double spawnForce) {
+            this.locations = locations;
+            this.types = types;
+            this.launchDirection = launchDirection;
+            this.spawnForce = spawnForce;
+            this.world = locations.get(0).getWorld();
+            this.nextIndex = locations.size() - 1;
+
+            // Request all chunks around the spawn positions to be loaded
+            for (Location loc : locations) {
+                int cx = loc.getBlockX() >> 4;
+                int cz = loc.getBlockZ() >> 4;
+                for (int dx = -CHUNK_RADIUS; dx <= CHUNK_RADIUS; dx++) {
+                    for (int dz = -CHUNK_RADIUS; dz <= CHUNK_RADIUS; dz++) {
+                        if (this.chunks.add(MathUtil.longHashToLong(cx + dx, cz + dz))) {
+                            ChunkKeepAliveManager.preload(this.world, cx + dx, cz + dz);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Continues spawning this train
+         *
+         * @param deadline System nano time after which no more carts should be spawned
+         * @return True if the train has finished spawning
+         */
+        public boolean update(long deadline) {
+            // Wait for all chunks to be loaded. Load them right away when this takes too long.
+            if (!this.chunks.isEmpty()) {
+                boolean forceLoad = (deadline == Long.MAX_VALUE) || (++this.preloadTicks > MAX_PRELOAD_TICKS);
+                Iterator<Long> iter = this.chunks.iterator();
+                while (iter.hasNext()) {
+                    long key = iter.next().longValue();
+                    int cx = MathUtil.longHashMsw(key);
+                    int cz = MathUtil.longHashLsw(key);
+                    if (forceLoad || this.world.isChunkLoaded(cx, cz)) {
+                        // Loads the chunk synchronously if it is not loaded yet
+                        ChunkKeepAliveManager.acquire(this.world, key);
+                        this.acquiredChunks.add(Long.valueOf(key));
+                        iter.remove();
+                    }
+                }
+                if (!this.chunks.isEmpty()) {
+                    return false;
+                }
+            }
+
+            // Spawn carts from the back to the front, always at least one per tick
+            if (this.group == null) {
+                this.group = MinecartGroup.createInactive();
+            } else if (this.isBroken()) {
+                this.abort();
+                return true;
+            }
+            do {
+                MinecartMember<?> mm = MinecartMemberStore.spawn(this.locations.get(this.nextIndex), this.types.get(this.nextIndex));
+                this.group.add(mm);
+            } while (--this.nextIndex >= 0 && System.nanoTime() < deadline);
+            if (this.nextIndex >= 0) {
+                return false;
+            }
+
+            // All carts exist, start the train
+            this.releaseChunks();
+            MinecartGroup.activate(this.group);
+            this.group.updateDirection();
+            this.group.getProperties().setDefault("spawner");
+            if (this.spawnForce != 0 && this.launchDirection != BlockFace.SELF) {
+                this.group.head().getActions().addActionLaunch(this.launchDirection, 2, this.spawnForce);
+            }
+            GroupCreateEvent.call(this.group);
+            return true;
+        }
+
+        /**
+         * Checks whether carts spawned earlier were removed, or unloaded together with the group
+         *
+         * @return True if the group can not be completed
+         */
+        private boolean isBroken() {
+            if (this.group.size() != (this.locations.size() - 1 - this.nextIndex)) {
+                return true;
+            }
+            for (MinecartMember<?> member : this.group) {
+                if (member.isUnloaded() || member.getEntity().isDead()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void abort() {
+            this.releaseChunks();
+            for (MinecartMember<?> member : new ArrayList<MinecartMember<?>>(this.group)) {
+                if (!member.getEntity().isDead()) {
+                    member.getEntity().remove();
+                }
+            }
+            // Empty groups have already forgotten their properties
+            if (!this.group.isEmpty()) {
+                String trainName = this.group.getProperties().getTrainName();
+                OfflineGroupManager.removeGroup(trainName);
+                TrainPropertiesStore.remove(trainName);
+            }
+        }
+
+        private void releaseChunks() {
+            for (Long key : this.acquiredChunks) {
+                ChunkKeepAliveManager.release(this.world, key.longValue());
+            }
+            this.acquiredChunks.clear();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.bergerkiller.bukkit.tc.statements;
+
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+
+/**
+ * A statement that has been parsed once and is bound to the {@link Statement} that handles it.
+ * Shortcut replacement, '!' inversion, matching and splitting of '@' arrays are all done
+ * when compiling, so evaluating it only calls into the bound statement.
+ * Use {@link Statement#compile(String)} to obtain one.
+ */
+public final class CompiledStatement {
+    private final String text;
+    private final Statement statement;
+    private final String statementText;
+    private final String[] array;
+    private final boolean inverted;
+
+    private CompiledStatement(String text, Statement statement, String statementText, String[] array, boolean inverted) {
+        this.text = text;
+        this.statement = statement;
+        this.statementText = statementText;
+        this.array = array;
+        this.inverted = inverted;
+    }
+
+    /**
+     * Compiles statement text. The statement shortcuts should already have been applied.
+     *
+     * @param text input text the statement was compiled from
+     * @param replacedText text with shortcuts applied
+     * @param statements to match against, in order
+     * @return compiled statement
+     */
+    static CompiledStatement compile(String text, String replacedText, Iterable<Statement> statements) {
+        boolean inv = false;
+        String statementText = replacedText;
+        while (statementText.startsWith("!")) {
+            statementText = statementText.substring(1);
+            inv = !inv;
+        }
+        if (!statementText.isEmpty()) {
+            String lowerText = statementText.toLowerCase();
+            int idx = lowerText.indexOf('@');
+            String arrayText = idx == -1 ? null : lowerText.substring(0, idx);
+            for (Statement statement : statements) {
+                if (statement.match(lowerText)) {
+                    return new CompiledStatement(text, statement, statementText, null, inv);
+                } else if (arrayText != null && statement.matchArray(arrayText)) {
+                    String[] array = Statement.parseArray(statementText.substring(idx + 1));
+                    return new CompiledStatement(text, statement, statementText, array, inv);
+                }
+            }
+        }
+        return new CompiledStatement(text, null, statementText, null, inv);
+    }
+
+    /**
+     * Gets the text this statement was compiled from
+     *
+     * @return statement text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Gets the statement implementation this compiled statement is bound to
+     *
+     * @return bound statement, or null if no statement matched the text
+     */
+    public Statement getStatement() {
+        return this.statement;
+    }
+
+    /**
+     * Gets whether the result of this statement is inverted using '!'
+     *
+     * @return True if inverted
+     */
+    public boolean isInverted() {
+        return this.inverted;
+    }
+
+    /**
+     * Gets whether this statement is evaluated as an '@' array
+     *
+     * @return True if an array statement
+     */
+    public boolean isArray() {
+        return this.array != null;
+    }
+
+    public boolean has(MinecartMember<?> member, SignActionEvent event) {
+        return has(member, null, event);
+    }
+
+    public boolean has(MinecartGroup group, SignActionEvent event) {
+        return has(null, group, event);
+    }
+
+    /**
+     * Evaluates this statement for a member or group
+     *
+     * @param member to use, or null to use group
+     * @param group  to use, or null to use member
+     * @param event  to parse
+     * @return True if successful, False if not
+     */
+    public boolean has(MinecartMember<?> member, MinecartGroup group, SignActionEvent event) {
+        if (this.statement == null) {
+            return this.inverted;
+        } else if (member != null) {
+            if (this.array != null) {
+                return this.statement.handleArray(member, this.array, event) != this.inverted;
+            } else {
+                return this.statement.handle(member, this.statementText, event) != this.inverted;
+            }
+        } else if (group != null) {
+            if (this.array != null) {
+                return this.statement.handleArray(group, this.array, event) != this.inverted;
+            } else {
+                return this.statement.handle(group, this.statementText, event) != this.inverted;
+            }
+        } else {
+            return this.inverted;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{statement=" + (this.statement == null ? "none" : this.statement.getClass().getSimpleName())
+                + ", text=" + this.text + ", inverted=" + this.inverted + "}";
+    }
+}
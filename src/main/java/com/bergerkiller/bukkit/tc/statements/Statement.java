@@ -6,10 +6,21 @@ import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class Statement {
+    private static final int MAX_COMPILED_STATEMENTS = 2048;
     private static List<Statement> statements = new ArrayList<>();
+    private static final Map<String, CompiledStatement> compiledStatements = new LinkedHashMap<String, CompiledStatement>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledStatement> eldest) {
+            return size() > MAX_COMPILED_STATEMENTS;
+        }
+    };
 
     public static String[] parseArray(String text) {
         return text.split(";", -1);
@@ -39,13 +50,39 @@ public abstract class Statement {
 
     public static void deinit() {
         statements.clear();
+        clearCompiled();
     }
 
     public static <T extends Statement> T register(T statement) {
         statements.add(statement);
+        clearCompiled();
         return statement;
     }
 
+    /**
+     * Clears all cached compiled statements. Must be called when the statement
+     * shortcuts or the registered statements change.
+     */
+    public static void clearCompiled() {
+        compiledStatements.clear();
+    }
+
+    /**
+     * Compiles statement text, binding it to the statement that handles it.
+     * Compiled statements are cached by their text, so a sign is parsed only once.
+     * 
+     * @param text to compile
+     * @return compiled statement
+     */
+    public static CompiledStatement compile(String text) {
+        CompiledStatement compiled = compiledStatements.get(text);
+        if (compiled == null) {
+            compiled = CompiledStatement.compile(text, TCConfig.statementShortcuts.replace(text), statements);
+            compiledStatements.put(text, compiled);
+        }
+        return compiled;
+    }
+
     public static boolean has(MinecartMember<?> member, String text, SignActionEvent event) {
         return has(member, null, text, event);
     }
@@ -64,35 +101,7 @@ public abstract class Statement {
      * @return True if successful, False if not
      */
     public static boolean has(MinecartMember<?> member, MinecartGroup group, String text, SignActionEvent event) {
-        boolean inv = false;
-        text = TCConfig.statementShortcuts.replace(text);
-        while (text.startsWith("!")) {
-            text = text.substring(1);
-            inv = !inv;
-        }
-        if (text.isEmpty()) {
-            return inv;
-        }
-        String lowerText = text.toLowerCase();
-        int idx = lowerText.indexOf('@');
-        String arrayText = idx == -1 ? null : lowerText.substring(0, idx);
-        String[] array = idx == -1 ? null : parseArray(text.substring(idx + 1));
-        for (Statement statement : statements) {
-            if (statement.match(lowerText)) {
-                if (member != null) {
-                    return statement.handle(member, text, event) != inv;
-                } else if (group != null) {
-                    return statement.handle(group, text, event) != inv;
-                }
-            } else if (arrayText != null && statement.matchArray(arrayText)) {
-                if (member != null) {
-                    return statement.handleArray(member, array, event) != inv;
-                } else if (group != null) {
-                    return statement.handleArray(group, array, event) != inv;
-                }
-            }
-        }
-        return inv;
+        return compile(text).has(member, group, event);
     }
 
     /**
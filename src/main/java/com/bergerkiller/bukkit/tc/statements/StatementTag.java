@@ -1,7 +1,13 @@
 package com.bergerkiller.bukkit.tc.statements;
 
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.properties.CartProperties;
+import com.bergerkiller.bukkit.tc.properties.CartPropertiesStore;
+import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+
+import java.util.Collection;
 
 /**
  * This tag is a default and always matches, ask it lastly!
@@ -18,6 +24,36 @@ public class StatementTag extends Statement {
         return true;
     }
 
+    @Override
+    public boolean handle(MinecartGroup group, String tag, SignActionEvent event) {
+        return this.handleArray(group, parseArray(tag), event);
+    }
+
+    @Override
+    public boolean handleArray(MinecartGroup group, String[] tags, SignActionEvent event) {
+        TrainProperties prop = group.getProperties();
+        for (String tag : tags) {
+            if (tag.indexOf('*') == -1 && !tag.startsWith("!")) {
+                // Exact tag: when few carts have it, check those using the tag index
+                Collection<CartProperties> tagged = CartPropertiesStore.getAllWithTag(tag);
+                if (tagged.size() <= group.size()) {
+                    for (CartProperties cprop : tagged) {
+                        if (cprop.getTrainProperties() == prop) {
+                            return true;
+                        }
+                    }
+                    continue;
+                }
+            }
+            for (MinecartMember<?> member : group) {
+                if (member.getProperties().matchTag(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean handle(MinecartMember<?> member, String tag, SignActionEvent event) {
         return this.handleArray(member, parseArray(tag), event);
@@ -7,6 +7,7 @@ import com.bergerkiller.bukkit.common.utils.StreamUtil;
 import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.common.wrappers.LongHashSet.LongIterator;
 import com.bergerkiller.bukkit.tc.TCConfig;
+import com.bergerkiller.bukkit.tc.TraceRecorder;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
@@ -461,11 +462,17 @@ public class OfflineGroupManager {
     }
 
     private void restoreGroup(OfflineGroup group, World world) {
-        containedTrains.remove(group.name);
-        groupmap.remove(group);
-        for (OfflineMember wm : group.members) {
-            containedMinecarts.remove(wm.entityUID);
+        long traceSpan = TraceRecorder.isSampling() ? TraceRecorder.begin(TraceRecorder.RESTORE,
+                null, group.name, null) : -1L;
+        try {
+            containedTrains.remove(group.name);
+            groupmap.remove(group);
+            for (OfflineMember wm : group.members) {
+                containedMinecarts.remove(wm.entityUID);
+            }
+            group.create(world);
+        } finally {
+            TraceRecorder.end(traceSpan);
         }
-        group.create(world);
     }
 }
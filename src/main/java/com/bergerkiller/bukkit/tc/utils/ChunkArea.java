@@ -42,9 +42,19 @@ public class ChunkArea {
         }
     }
 
-    public void update(int x, int z) {
+    /**
+     * Moves this chunk area to a new center chunk
+     * 
+     * @param x coordinate of the center chunk
+     * @param z coordinate of the center chunk
+     * @return True if the area changed, False if it was already at this chunk
+     */
+    public boolean update(int x, int z) {
         if (this.x != x || this.z != z) {
             updateForced(x, z);
+            return true;
+        } else {
+            return false;
         }
     }
 
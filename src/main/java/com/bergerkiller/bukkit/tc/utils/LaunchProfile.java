@@ -0,0 +1,204 @@
+package com.bergerkiller.bukkit.tc.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The distances launched at every tick by a {@link LaunchFunction}, computed once for a given
+ * function type, start and end velocity, and launch time or distance.
+ * Profiles are cached, so launchers and stations using the same configuration share the same table,
+ * and looking up the distance at a tick is a single array access.
+ */
+public final class LaunchProfile {
+    private static final int MAX_CACHED_PROFILES = 256;
+    private static final Map<Key, LaunchProfile> cache = new LinkedHashMap<Key, LaunchProfile>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, LaunchProfile> eldest) {
+            return size() > MAX_CACHED_PROFILES;
+        }
+    };
+    private final double startVelocity;
+    private final double endVelocity;
+    private final double[] distances;
+
+    private LaunchProfile(LaunchFunction function) {
+        this.startVelocity = function.getStartVelocity();
+        this.endVelocity = function.getEndVelocity();
+        this.distances = new double[function.getTotalTime() + 1];
+        for (int tick = 0; tick < this.distances.length; tick++) {
+            this.distances[tick] = function.getDistance(tick);
+        }
+    }
+
+    /**
+     * Gets the launch profile for launching during a fixed number of ticks
+     *
+     * @param function type of launch function
+     * @param startVelocity velocity at the start of the launch
+     * @param endVelocity velocity at the end of the launch
+     * @param totalTime number of ticks the launch takes
+     * @return launch profile
+     */
+    public static LaunchProfile forTime(Class<? extends LaunchFunction> function, double startVelocity, double endVelocity, int totalTime) {
+        return get(new Key(function, startVelocity, endVelocity, true, Math.max(0, totalTime)));
+    }
+
+    /**
+     * Gets the launch profile for launching over a fixed distance
+     *
+     * @param function type of launch function
+     * @param startVelocity velocity at the start of the launch
+     * @param endVelocity velocity at the end of the launch
+     * @param totalDistance distance in blocks to launch
+     * @return launch profile
+     */
+    public static LaunchProfile forDistance(Class<? extends LaunchFunction> function, double startVelocity, double endVelocity, double totalDistance) {
+        return get(new Key(function, startVelocity, endVelocity, false, totalDistance));
+    }
+
+    /**
+     * Clears all cached launch profiles
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static LaunchProfile get(Key key) {
+        LaunchProfile profile = cache.get(key);
+        if (profile == null) {
+            LaunchFunction function;
+            try {
+                function = key.function.newInstance();
+            } catch (Throwable t) {
+                t.printStackTrace();
+                function = new LaunchFunction.Linear();
+            }
+            function.setVelocityRange(key.startVelocity, key.endVelocity);
+            if (key.timed) {
+                function.setTotalTime((int) key.amount);
+            } else {
+                function.setTotalDistance(key.amount);
+            }
+            profile = new LaunchProfile(function);
+            cache.put(key, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Gets the velocity at the start of the launch
+     *
+     * @return start velocity
+     */
+    public double getStartVelocity() {
+        return this.startVelocity;
+    }
+
+    /**
+     * Gets the velocity at the end of the launch
+     *
+     * @return end velocity
+     */
+    public double getEndVelocity() {
+        return this.endVelocity;
+    }
+
+    /**
+     * Gets the total amount of ticks the launch takes to complete
+     *
+     * @return total time
+     */
+    public int getTotalTime() {
+        return this.distances.length - 1;
+    }
+
+    /**
+     * Gets the total distance launched
+     *
+     * @return total distance
+     */
+    public double getTotalDistance() {
+        return this.distances[this.distances.length - 1];
+    }
+
+    /**
+     * Gets the expected distance launched at the given tick
+     *
+     * @param tick time
+     * @return total distance launched
+     */
+    public double getDistance(int tick) {
+        if (tick <= 0) {
+            return this.distances[0];
+        } else if (tick >= this.distances.length) {
+            return this.distances[this.distances.length - 1];
+        } else {
+            return this.distances[tick];
+        }
+    }
+
+    /**
+     * Gets the number of ticks it takes to launch a given distance.
+     * When the distance is beyond the total distance of this launch, the total time is returned.
+     *
+     * @param distance to look up
+     * @return ticks until the distance is launched
+     */
+    public int getTimeAtDistance(double distance) {
+        int low = 0;
+        int high = this.distances.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.distances[mid] < distance) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "{vstart=" + this.startVelocity + " vend=" + this.endVelocity +
+                " time=" + this.getTotalTime() + " distance=" + this.getTotalDistance() + "}";
+    }
+
+    private static final class Key {
+        public final Class<? extends LaunchFunction> function;
+        public final double startVelocity, endVelocity;
+        public final boolean timed;
+        public final double amount;
+
+        public Key(Class<? extends LaunchFunction> function, double startVelocity, double endVelocity, boolean timed, double amount) {
+            this.function = function;
+            this.startVelocity = startVelocity;
+            this.endVelocity = endVelocity;
+            this.timed = timed;
+            this.amount = amount;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = this.function.hashCode();
+            hash = 31 * hash + Double.hashCode(this.startVelocity);
+            hash = 31 * hash + Double.hashCode(this.endVelocity);
+            hash = 31 * hash + Double.hashCode(this.amount);
+            return this.timed ? hash : ~hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.function == other.function && this.timed == other.timed &&
+                    this.startVelocity == other.startVelocity &&
+                    this.endVelocity == other.endVelocity &&
+                    this.amount == other.amount;
+        }
+    }
+}
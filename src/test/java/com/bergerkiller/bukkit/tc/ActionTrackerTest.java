@@ -0,0 +1,155 @@
+package com.bergerkiller.bukkit.tc;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.tc.actions.Action;
+import com.bergerkiller.bukkit.tc.actions.MemberAction;
+import com.bergerkiller.bukkit.tc.actions.MovementAction;
+import com.bergerkiller.bukkit.tc.actions.WaitAction;
+import com.bergerkiller.bukkit.tc.controller.components.ActionTracker;
+
+/**
+ * Tests the queue of actions kept by the action tracker
+ */
+public class ActionTrackerTest {
+
+    @Test
+    public void testWrapAround() {
+        ActionTracker tracker = new ActionTracker();
+        Action[] actions = createActions(7);
+
+        // Move the head forward, so that the next actions wrap around the end of the buffer
+        tracker.addAction(actions[0]);
+        tracker.addAction(actions[1]);
+        tracker.addAction(actions[2]);
+        assertSame(actions[0], tracker.removeAction());
+        assertSame(actions[1], tracker.removeAction());
+        tracker.addAction(actions[3]);
+        tracker.addAction(actions[4]);
+        tracker.addAction(actions[5]);
+
+        // Grow the buffer while the actions wrap around
+        tracker.addAction(actions[6]);
+
+        for (int i = 2; i < actions.length; i++) {
+            assertSame(actions[i], tracker.getCurrentAction());
+            assertSame(actions[i], tracker.removeAction());
+        }
+        assertFalse(tracker.hasAction());
+        assertNull(tracker.getCurrentAction());
+        assertNull(tracker.removeAction());
+    }
+
+    @Test
+    public void testRemoveMemberActions() {
+        ActionTracker tracker = new ActionTracker();
+        Action[] actions = createActions(2);
+
+        // Move the head forward first, so the compaction has to wrap around the end of the buffer
+        tracker.addAction(new Action());
+        tracker.addAction(new Action());
+        tracker.removeAction();
+        tracker.removeAction();
+
+        // The member of these member actions is not set, which is fine for removing them
+        tracker.addAction(actions[0]);
+        tracker.addAction(new MemberAction());
+        tracker.addAction(actions[1]);
+        tracker.addAction(new MemberAction());
+        tracker.removeActions(null);
+
+        for (Action action : actions) {
+            assertSame(action, tracker.removeAction());
+        }
+        assertFalse(tracker.hasAction());
+    }
+
+    @Test
+    public void testRemoveMemberActionsWithoutActions() {
+        ActionTracker tracker = new ActionTracker();
+        Action[] actions = createActions(2);
+        tracker.addAction(actions[0]);
+        tracker.addAction(actions[1]);
+
+        // Removing the member actions when there are none leaves the queue alone
+        tracker.removeActions(null);
+        assertSame(actions[0], tracker.removeAction());
+        assertSame(actions[1], tracker.removeAction());
+
+        // Member actions that were already removed from the queue are no longer counted
+        tracker.addAction(new MemberAction());
+        tracker.removeAction();
+        tracker.addAction(actions[0]);
+        tracker.removeActions(null);
+        assertSame(actions[0], tracker.getCurrentAction());
+    }
+
+    @Test
+    public void testCurrentActionFlags() {
+        ActionTracker tracker = new ActionTracker();
+        assertFalse(tracker.isWaitAction());
+        assertFalse(tracker.isMovementControlled());
+
+        // Only the current action decides the flags
+        tracker.addAction(new TestWaitAction());
+        tracker.addAction(new Action());
+        assertTrue(tracker.isWaitAction());
+        assertTrue(tracker.isMovementControlled());
+
+        tracker.removeAction();
+        assertFalse(tracker.isWaitAction());
+        assertFalse(tracker.isMovementControlled());
+
+        tracker.addAction(new TestMovementAction(false));
+        tracker.removeAction();
+        assertFalse(tracker.isWaitAction());
+        assertFalse(tracker.isMovementControlled());
+
+        tracker.addAction(new TestMovementAction(true));
+        assertFalse(tracker.isWaitAction());
+        assertTrue(tracker.isMovementControlled());
+
+        tracker.clear();
+        assertFalse(tracker.hasAction());
+        assertFalse(tracker.isMovementControlled());
+
+        // Removing member actions can make another action the current action
+        tracker.addAction(new MemberAction());
+        tracker.addAction(new TestWaitAction());
+        assertFalse(tracker.isWaitAction());
+        tracker.removeActions(null);
+        assertTrue(tracker.isWaitAction());
+        assertTrue(tracker.isMovementControlled());
+    }
+
+    private static Action[] createActions(int count) {
+        Action[] actions = new Action[count];
+        for (int i = 0; i < count; i++) {
+            actions[i] = new Action();
+        }
+        return actions;
+    }
+
+    private static class TestMovementAction extends Action implements MovementAction {
+        private final boolean suppressed;
+
+        public TestMovementAction(boolean suppressed) {
+            this.suppressed = suppressed;
+        }
+
+        @Override
+        public boolean isMovementSuppressed() {
+            return this.suppressed;
+        }
+    }
+
+    private static class TestWaitAction extends Action implements WaitAction {
+
+        @Override
+        public boolean isMovementSuppressed() {
+            return true;
+        }
+    }
+}
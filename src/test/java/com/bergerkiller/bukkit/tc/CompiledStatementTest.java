@@ -0,0 +1,106 @@
+package com.bergerkiller.bukkit.tc;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bergerkiller.bukkit.tc.statements.CompiledStatement;
+import com.bergerkiller.bukkit.tc.statements.Statement;
+
+public class CompiledStatementTest {
+    private TestStatement statement;
+
+    @Before
+    public void registerStatements() {
+        Statement.deinit();
+        statement = Statement.register(new TestStatement("test", "t"));
+    }
+
+    @After
+    public void unregisterStatements() {
+        Statement.deinit();
+    }
+
+    @Test
+    public void testCompile() {
+        CompiledStatement compiled = Statement.compile("test");
+        assertSame(statement, compiled.getStatement());
+        assertEquals("test", compiled.getText());
+        assertFalse(compiled.isInverted());
+        assertFalse(compiled.isArray());
+
+        // Statements are matched ignoring case
+        assertSame(statement, Statement.compile("TEST").getStatement());
+
+        // Every '!' inverts the result
+        compiled = Statement.compile("!test");
+        assertSame(statement, compiled.getStatement());
+        assertTrue(compiled.isInverted());
+        compiled = Statement.compile("!!test");
+        assertSame(statement, compiled.getStatement());
+        assertFalse(compiled.isInverted());
+
+        // Array statements are split up when compiling
+        compiled = Statement.compile("!t@a;b");
+        assertSame(statement, compiled.getStatement());
+        assertTrue(compiled.isArray());
+        assertTrue(compiled.isInverted());
+    }
+
+    @Test
+    public void testCompileUnknown() {
+        // Statements that match nothing evaluate to whether they are inverted
+        CompiledStatement compiled = Statement.compile("unknown");
+        assertNull(compiled.getStatement());
+        assertFalse(compiled.has(null, null, null));
+        compiled = Statement.compile("!unknown");
+        assertNull(compiled.getStatement());
+        assertTrue(compiled.has(null, null, null));
+        assertNull(Statement.compile("").getStatement());
+        assertNull(Statement.compile("!").getStatement());
+    }
+
+    @Test
+    public void testCompileCached() {
+        CompiledStatement compiled = Statement.compile("test");
+        assertSame(compiled, Statement.compile("test"));
+        assertNotSame(compiled, Statement.compile("!test"));
+    }
+
+    @Test
+    public void testCompileCacheCleared() {
+        // Registering a statement can change what the text is bound to
+        assertNull(Statement.compile("other").getStatement());
+        TestStatement other = Statement.register(new TestStatement("other", "o"));
+        assertSame(other, Statement.compile("other").getStatement());
+
+        // Reloading the configuration clears the cache, as the shortcuts may have changed
+        CompiledStatement compiled = Statement.compile("test");
+        Statement.clearCompiled();
+        CompiledStatement recompiled = Statement.compile("test");
+        assertNotSame(compiled, recompiled);
+        assertSame(statement, recompiled.getStatement());
+    }
+
+    private static class TestStatement extends Statement {
+        private final String prefix;
+        private final String arrayName;
+
+        public TestStatement(String prefix, String arrayName) {
+            this.prefix = prefix;
+            this.arrayName = arrayName;
+        }
+
+        @Override
+        public boolean match(String text) {
+            return text.startsWith(this.prefix);
+        }
+
+        @Override
+        public boolean matchArray(String text) {
+            return text.equals(this.arrayName);
+        }
+    }
+}
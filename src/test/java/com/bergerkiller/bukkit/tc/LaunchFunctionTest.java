@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import com.bergerkiller.bukkit.tc.utils.LaunchFunction;
+import com.bergerkiller.bukkit.tc.utils.LaunchProfile;
 
 public class LaunchFunctionTest {
 
@@ -28,6 +29,22 @@ public class LaunchFunctionTest {
         //logDistanceCurve(function);
     }
 
+    @Test
+    public void testLaunchProfile() {
+        LaunchFunction function = new LaunchFunction.Bezier();
+        function.setVelocityRange(0.2, 0.4);
+        function.setTotalDistance(20.0);
+
+        LaunchProfile profile = LaunchProfile.forDistance(LaunchFunction.Bezier.class, 0.2, 0.4, 20.0);
+        assertSame(profile, LaunchProfile.forDistance(LaunchFunction.Bezier.class, 0.2, 0.4, 20.0));
+        assertEquals(function.getTotalTime(), profile.getTotalTime());
+        assertEquals(20.0, profile.getTotalDistance(), 0.001);
+        for (int tick = 0; tick <= profile.getTotalTime(); tick++) {
+            assertEquals(function.getDistance(tick), profile.getDistance(tick), 1e-10);
+        }
+        assertEquals(profile.getTotalTime(), profile.getTimeAtDistance(20.0));
+    }
+
     public void testAll(LaunchFunction function) {
         testTime(function, 0.0, 0.4, 100, 20.0);
         testTime(function, 0.0, 0.4, 200, 40.2);